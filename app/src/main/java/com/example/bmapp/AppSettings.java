@@ -0,0 +1,160 @@
+package com.example.bmapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide settings shared by the app's screens, kept in memory and written
+ * behind to {@code BadmintonMainPrefs}.
+ *
+ * Changes are coalesced and flushed as one {@code apply()} once no setting
+ * has changed for {@link #FLUSH_DELAY_MS}, or right away when a screen calls
+ * {@link #flush()} from {@code onPause}/{@code onStop}. Getters and setters
+ * are meant for the main thread; {@link #getInstance} may be called from any
+ * thread to preload.
+ */
+public final class AppSettings {
+
+    static final String PREFS_NAME = "BadmintonMainPrefs";
+    private static final long FLUSH_DELAY_MS = 500;
+
+    private static final String KEY_COURT_FEE = "court_fee";
+    private static final String KEY_NUM_MEMBERS = "num_members";
+    private static final String KEY_SHUTTLE_FEE = "shuttle_fee";
+
+    private static AppSettings instance;
+
+    private final SharedPreferences sharedPreferences;
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Object> dirty = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    public static synchronized AppSettings getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppSettings(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AppSettings(Context appContext) {
+        sharedPreferences = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        values.putAll(sharedPreferences.getAll());
+    }
+
+    // Main screen fields, kept as typed so a half-typed value like "12." survives
+    public String getCourtFeeText() {
+        return getString(KEY_COURT_FEE, "");
+    }
+
+    public void setCourtFeeText(String value) {
+        putValue(KEY_COURT_FEE, value);
+    }
+
+    // Only read by the players screen's totals; the main screen starts each session with it empty
+    public String getShuttleFeeText() {
+        return getString(KEY_SHUTTLE_FEE, "");
+    }
+
+    public void setShuttleFeeText(String value) {
+        putValue(KEY_SHUTTLE_FEE, value);
+    }
+
+    public String getMemberCountText() {
+        return getString(KEY_NUM_MEMBERS, "");
+    }
+
+    public void setMemberCountText(String value) {
+        putValue(KEY_NUM_MEMBERS, value);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public void putString(String key, String value) {
+        putValue(key, value);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public void putInt(String key, int value) {
+        putValue(key, value);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public void putLong(String key, long value) {
+        putValue(key, value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    public void putBoolean(String key, boolean value) {
+        putValue(key, value);
+    }
+
+    public void remove(String key) {
+        putValue(key, null);
+    }
+
+    /** Writes pending changes now, in one batch. */
+    public void flush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        for (Map.Entry<String, Object> entry : dirty.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                editor.remove(key);
+            } else if (value instanceof String) {
+                editor.putString(key, (String) value);
+            } else if (value instanceof Integer) {
+                editor.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                editor.putLong(key, (Long) value);
+            } else if (value instanceof Boolean) {
+                editor.putBoolean(key, (Boolean) value);
+            }
+        }
+        editor.apply();
+        dirty.clear();
+    }
+
+    private void putValue(String key, Object value) {
+        Object current = values.get(key);
+        if (current == null ? value == null : current.equals(value)) {
+            return;
+        }
+
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+        }
+        dirty.put(key, value);
+
+        // Restart the quiet period
+        mainHandler.removeCallbacks(flushRunnable);
+        mainHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.bmapp;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+public class BMApplication extends Application implements Configuration.Provider {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        PerfMetrics.init(this);
+    }
+
+    // WorkManager starts the first time it is used rather than with the process; see the manifest
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder()
+                .setMinimumLoggingLevel(Log.INFO)
+                .build();
+    }
+}
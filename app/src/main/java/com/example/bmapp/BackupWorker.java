@@ -0,0 +1,106 @@
+package com.example.bmapp;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily local backup of the roster and recorded sessions; see
+ * {@link RosterBackup}.
+ *
+ * It only runs while the device is idle and neither battery nor storage is
+ * low, and most runs write a small delta or nothing at all. The store is read
+ * inside one {@link PlayerStore#beginSnapshot snapshot} transaction, so the
+ * backup reflects a single moment.
+ */
+public class BackupWorker extends Worker {
+
+    private static final String TAG = "BackupWorker";
+    private static final String WORK_NAME = "roster_backup";
+    private static final String BACKUP_DIR = "backups";
+    private static final int READ_PAGE_SIZE = 500;
+    // Retries for a storage or database error, then the backup waits for the next day
+    private static final int MAX_ATTEMPTS = 3;
+
+    public BackupWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /** Schedules the daily backup, unless it already is. */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(BackupWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    static File backupDir(Context context) {
+        return new File(context.getFilesDir(), BACKUP_DIR);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        PlayerStore playerStore = PlayerStore.getInstance(context);
+        SessionLedger ledger = SessionLedger.getInstance(context);
+        try {
+            // Include edits that are still on their way to the store
+            PlayerRepository.getInstance(context).awaitPendingWrites();
+            playerStore.beginSnapshot();
+            try {
+                RosterBackup.backUp(backupDir(context), new RosterBackup.Source() {
+                    @Override
+                    public void forEachPlayer(RosterBackup.PlayerVisitor visitor) throws IOException {
+                        long afterId = 0;
+                        List<Player> page;
+                        do {
+                            page = playerStore.loadPage(afterId, READ_PAGE_SIZE);
+                            for (Player player : page) {
+                                visitor.visit(player.getId(), player.getName(), player.getAmountCents(),
+                                        player.isMember());
+                                afterId = player.getId();
+                            }
+                        } while (page.size() == READ_PAGE_SIZE);
+                    }
+
+                    @Override
+                    public void forEachSessionAfter(long afterId, SessionLedger.RecordVisitor visitor)
+                            throws IOException {
+                        ledger.forEachSessionAfter(afterId, visitor);
+                    }
+                }, System.currentTimeMillis());
+            } finally {
+                playerStore.endSnapshot();
+            }
+            return Result.success();
+        } catch (IOException | InterruptedException | SQLiteException e) {
+            // Usually passing, such as a full disk or a locked database
+            Log.e(TAG, "Backup failed", e);
+            return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure();
+        } catch (RuntimeException e) {
+            // A bug that a retry would only repeat
+            Log.e(TAG, "Backup failed", e);
+            return Result.failure();
+        }
+    }
+}
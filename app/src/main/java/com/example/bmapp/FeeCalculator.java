@@ -0,0 +1,100 @@
+package com.example.bmapp;
+
+/**
+ * Splits a session's fees between members and non-members, in whole cents.
+ *
+ * Everyone shares the court and shuttle fees equally, except that members have
+ * already paid the court, so the court money collected from non-members is
+ * handed back to members as a discount. With at least one member the players
+ * therefore pay exactly the shuttle fee between them; with no members the
+ * non-members pay the court fee too.
+ *
+ * Shares that don't divide evenly are rounded half-up for the non-member total
+ * and the leftover cents go one each to the first players in a group, so the
+ * individual shares always add up exactly to {@link Result#totalCents}.
+ * Nothing here allocates; callers pass in a {@link Result} to fill.
+ */
+public final class FeeCalculator {
+
+    /** Output of one calculation. Reuse instances to avoid allocation. */
+    public static final class Result {
+        /** What each member pays; may be negative when the court discount is larger than their share. */
+        public long memberShareCents;
+        /** How many members pay one cent more than {@link #memberShareCents}. */
+        public int membersPayingExtraCent;
+        public long nonMemberShareCents;
+        /** How many non-members pay one cent more than {@link #nonMemberShareCents}. */
+        public int nonMembersPayingExtraCent;
+        /** Sum of every player's share. */
+        public long totalCents;
+    }
+
+    private FeeCalculator() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a fee or count is negative or nobody played
+     * @throws ArithmeticException if the amounts are too large for exact arithmetic
+     */
+    public static void calculate(long courtFeeCents, long shuttleFeeCents,
+                                 int numMembers, int numNonMembers, Result out) {
+        if (courtFeeCents < 0 || shuttleFeeCents < 0) {
+            throw new IllegalArgumentException("Fees cannot be negative");
+        }
+        if (numMembers < 0 || numNonMembers < 0) {
+            throw new IllegalArgumentException("Player counts cannot be negative");
+        }
+        int totalPlayers = numMembers + numNonMembers;
+        if (totalPlayers == 0) {
+            throw new IllegalArgumentException("At least one player is needed");
+        }
+
+        // Members prepaid the court, so it is only collected when there are none
+        long totalCents = numMembers > 0
+                ? shuttleFeeCents
+                : Math.addExact(courtFeeCents, shuttleFeeCents);
+
+        // Non-members pay a full share of court plus shuttle
+        long nonMemberTotal = divideHalfUp(
+                Math.multiplyExact(Math.addExact(courtFeeCents, shuttleFeeCents), numNonMembers),
+                totalPlayers);
+        long memberTotal = totalCents - nonMemberTotal;
+
+        out.totalCents = totalCents;
+        if (numNonMembers > 0) {
+            out.nonMemberShareCents = Math.floorDiv(nonMemberTotal, numNonMembers);
+            out.nonMembersPayingExtraCent = (int) Math.floorMod(nonMemberTotal, (long) numNonMembers);
+        } else {
+            out.nonMemberShareCents = 0;
+            out.nonMembersPayingExtraCent = 0;
+        }
+        if (numMembers > 0) {
+            out.memberShareCents = Math.floorDiv(memberTotal, numMembers);
+            out.membersPayingExtraCent = (int) Math.floorMod(memberTotal, (long) numMembers);
+        } else {
+            out.memberShareCents = 0;
+            out.membersPayingExtraCent = 0;
+        }
+    }
+
+    /**
+     * Calculates {@code count} sessions at once; entry {@code i} of each input
+     * array describes session {@code i} and its result goes to {@code out[i]}.
+     */
+    public static void calculateBatch(int count, long[] courtFeeCents, long[] shuttleFeeCents,
+                                      int[] numMembers, int[] numNonMembers, Result[] out) {
+        for (int i = 0; i < count; i++) {
+            calculate(courtFeeCents[i], shuttleFeeCents[i], numMembers[i], numNonMembers[i], out[i]);
+        }
+    }
+
+    // Rounds numerator / denominator half away from zero; denominator must be positive
+    static long divideHalfUp(long numerator, long denominator) {
+        long quotient = numerator / denominator;
+        long remainder = numerator % denominator;
+        if (Math.abs(remainder) * 2 >= denominator) {
+            quotient += numerator < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
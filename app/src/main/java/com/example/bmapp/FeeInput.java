@@ -0,0 +1,138 @@
+package com.example.bmapp;
+
+/**
+ * Reads the four fee fields of the main screen as they are typed.
+ *
+ * Each field is parsed only when its own text changes, and {@link #set}
+ * reports whether that changed anything the calculation depends on, so the
+ * screen recalculates only for a real change. Every rule lives here and
+ * produces a string resource per field for an inline error; an empty field
+ * has no error, it just holds the calculation back.
+ */
+final class FeeInput {
+
+    static final int COURT_FEE = 0;
+    static final int MEMBERS = 1;
+    static final int SHUTTLE_FEE = 2;
+    static final int NON_MEMBERS = 3;
+    static final int FIELD_COUNT = 4;
+
+    // Far more players than a session can have, and small enough that shares never overflow
+    private static final int MAX_COUNT = 10_000;
+
+    private final String[] texts = new String[FIELD_COUNT];
+    private final long[] values = new long[FIELD_COUNT];
+    private final boolean[] present = new boolean[FIELD_COUNT];
+    private final int[] fieldErrors = new int[FIELD_COUNT];
+    // Rules that involve more than one field, such as nobody playing
+    private final int[] combinedErrors = new int[FIELD_COUNT];
+    private final FeeCalculator.Result scratch = new FeeCalculator.Result();
+    private boolean complete;
+
+    /**
+     * Takes the current text of {@code field}. Returns true if its value or
+     * any error changed, false if the edit made no difference, such as a
+     * space typed after a number.
+     */
+    boolean set(int field, CharSequence text) {
+        String trimmed = text.toString().trim();
+        if (trimmed.equals(texts[field])) {
+            return false;
+        }
+        texts[field] = trimmed;
+
+        long value = 0;
+        int error = 0;
+        if (!trimmed.isEmpty()) {
+            value = field == MEMBERS || field == NON_MEMBERS ? parseCount(trimmed) : Money.parseCents(trimmed);
+            if (value == Money.INVALID) {
+                error = R.string.error_fee_field_invalid;
+            } else if (value < 0) {
+                error = field == MEMBERS || field == NON_MEMBERS
+                        ? R.string.error_count_negative : R.string.error_fee_negative;
+            } else if (value > MAX_COUNT && (field == MEMBERS || field == NON_MEMBERS)) {
+                error = R.string.error_count_too_large;
+            }
+        }
+        boolean isPresent = !trimmed.isEmpty() && error == 0;
+        boolean changed = isPresent != present[field] || error != fieldErrors[field]
+                || (isPresent && value != values[field]);
+        values[field] = value;
+        present[field] = isPresent;
+        fieldErrors[field] = error;
+        if (changed) {
+            checkCombined();
+        }
+        return changed;
+    }
+
+    /** The string resource of the problem with {@code field}, or 0 if there is none. */
+    int errorOf(int field) {
+        return fieldErrors[field] != 0 ? fieldErrors[field] : combinedErrors[field];
+    }
+
+    /** Whether every field holds a usable value, so the fees can be split. */
+    boolean isComplete() {
+        return complete;
+    }
+
+    long courtFeeCents() {
+        return values[COURT_FEE];
+    }
+
+    long shuttleFeeCents() {
+        return values[SHUTTLE_FEE];
+    }
+
+    int numMembers() {
+        return (int) values[MEMBERS];
+    }
+
+    int numNonMembers() {
+        return (int) values[NON_MEMBERS];
+    }
+
+    private void checkCombined() {
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            combinedErrors[i] = 0;
+        }
+        complete = false;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (!present[i]) {
+                return;
+            }
+        }
+        if (values[MEMBERS] + values[NON_MEMBERS] == 0) {
+            combinedErrors[NON_MEMBERS] = R.string.error_no_players;
+            return;
+        }
+        try {
+            // The same arithmetic the result will use, so a fee it can't split is caught here
+            FeeCalculator.calculate(values[COURT_FEE], values[SHUTTLE_FEE],
+                    (int) values[MEMBERS], (int) values[NON_MEMBERS], scratch);
+        } catch (ArithmeticException e) {
+            combinedErrors[values[COURT_FEE] >= values[SHUTTLE_FEE] ? COURT_FEE : SHUTTLE_FEE] =
+                    R.string.error_fee_too_large;
+            return;
+        }
+        complete = true;
+    }
+
+    // Whole numbers only, with an optional minus sign; Money.INVALID otherwise
+    private static long parseCount(String text) {
+        int start = text.charAt(0) == '-' ? 1 : 0;
+        // More digits than any count needs; keeps the value far from overflowing
+        if (start == text.length() || text.length() - start > 9) {
+            return Money.INVALID;
+        }
+        long value = 0;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return Money.INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return start == 1 ? -value : value;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bmapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram in microseconds.
+ *
+ * Buckets are log-scale with two per power of two, so 64 counters cover a
+ * microsecond to over half an hour and a reported percentile is less than
+ * 1.5 times the true value. Recording is a handful of atomic adds and
+ * never allocates, so it is safe on the main thread and from any worker.
+ */
+final class LatencyHistogram {
+
+    static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Another thread raised the max first; try again against it
+        }
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    long getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / n;
+    }
+
+    /**
+     * Upper bound of the bucket holding the {@code percentile} (0 to 100)
+     * sample, capped at the largest value seen. 0 when nothing was recorded.
+     */
+    long getPercentileMicros(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    // 0 and 1 get their own buckets; above that, [2^k, 1.5*2^k) and [1.5*2^k, 2^(k+1))
+    static int bucketOf(long micros) {
+        if (micros < 2) {
+            return (int) micros;
+        }
+        int highBit = 63 - Long.numberOfLeadingZeros(micros);
+        int half = (int) (micros >>> (highBit - 1)) & 1;
+        return Math.min(BUCKET_COUNT - 1, 2 * highBit + half);
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < 2) {
+            return bucket;
+        }
+        int highBit = bucket / 2;
+        long lower = (1L << highBit) + (bucket % 2) * (1L << (highBit - 1));
+        return lower + (1L << (highBit - 1)) - 1;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.bmapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the roster saved by older versions of the app, a Gson list in the
+ * {@code players_list} preference of {@code BadmintonPlayersPrefs}, so
+ * {@link PlayerStore} can import it once.
+ *
+ * The saved list is parsed with a streaming {@link JsonReader}, so a large
+ * preference roster is handed over one player at a time instead of being
+ * materialized as a second full list. Nothing is bound by reflection, so
+ * this keeps working with R8 enabled.
+ */
+class LegacyRosterImporter {
+
+    interface PlayerSink {
+        void accept(Player player);
+    }
+
+    private static final String TAG = "LegacyRosterImporter";
+
+    private static final String PREFS_NAME = "BadmintonPlayersPrefs";
+    private static final String PLAYERS_KEY = "players_list";
+
+    // Where a roster that could only be read in part is kept for recovery by hand
+    private static final String SET_ASIDE_DIR = "legacy_roster_unreadable";
+    private static final String SET_ASIDE_PREFS_FILE = "players_list.json";
+
+    private final Context context;
+
+    LegacyRosterImporter(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Hands the saved legacy roster to {@code sink} in display order, with ids
+     * assigned to players that predate them. If the saved data is damaged, the
+     * players read before the bad spot are still handed over and this returns
+     * false; the caller should then {@link #setAsideLegacyData} before deleting it.
+     */
+    boolean importPlayers(PlayerSink sink) {
+        try {
+            readPreferences(sink);
+            return true;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            Log.e(TAG, "Failed to read legacy roster", e);
+            return false;
+        }
+    }
+
+    /**
+     * Copies the raw legacy list into {@code files/legacy_roster_unreadable}, so
+     * the players after a damaged spot survive {@link #deleteLegacyData}.
+     * Returns false if the copy could not be written.
+     */
+    boolean setAsideLegacyData() {
+        File dir = new File(context.getFilesDir(), SET_ASIDE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Could not create " + dir);
+            return false;
+        }
+        try {
+            String json = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                    .getString(PLAYERS_KEY, null);
+            if (json != null) {
+                try (Writer out = new OutputStreamWriter(
+                        new FileOutputStream(new File(dir, SET_ASIDE_PREFS_FILE)), StandardCharsets.UTF_8)) {
+                    out.write(json);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Could not set aside legacy roster", e);
+            return false;
+        }
+    }
+
+    /** Removes the legacy copy once it is safely imported. */
+    void deleteLegacyData() {
+        // Written before returning, as the caller then forgets the import is waiting on this
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .remove(PLAYERS_KEY)
+                .commit();
+    }
+
+    private void readPreferences(PlayerSink sink) throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String json = prefs.getString(PLAYERS_KEY, null);
+        if (json == null) {
+            return;
+        }
+
+        // Players saved here have no ids; number them in list order
+        long[] nextId = {1};
+        readPlayerArray(new StringReader(json), player -> {
+            long id = player.getId() != 0 ? player.getId() : nextId[0];
+            nextId[0] = Math.max(nextId[0], id) + 1;
+            sink.accept(new Player(id, player.getName(), player.getAmountCents()));
+        });
+    }
+
+    // Streams a JSON array of {"id", "name", "amount"} objects without building a list
+    private static void readPlayerArray(Reader in, PlayerSink sink) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        if (reader.peek() == JsonToken.NULL) {
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            long id = 0;
+            String name = null;
+            double amount = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextLong();
+                        break;
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "amount":
+                        amount = reader.nextDouble();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (name != null) {
+                // Saved as rupees in a double
+                sink.accept(new Player(id, name, Money.toCents(amount)));
+            }
+        }
+        reader.endArray();
+    }
+}
@@ -1,44 +1,83 @@
 package com.example.bmapp;
 
+import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
+import android.text.TextUtils;
 import android.text.TextWatcher;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
-import java.util.Locale;
+import com.google.android.material.textfield.TextInputLayout;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
-    private static final String PREFS_NAME = "BadmintonMainPrefs";
-    private static final String KEY_COURT_FEE = "court_fee";
-    private static final String KEY_NUM_MEMBERS = "num_members";
+    private static final String TAG = "MainActivity";
+    // Long enough to cover a burst of typing, short enough to feel live
+    private static final long RECALCULATE_DELAY_MS = 250;
 
     private EditText etCourtFee;
     private EditText etNumOfMembers;
     private EditText etShuttleFees;
     private EditText etNumOfNonMembers;
-    private Button btnCalculate;
+    // Indexed by the FeeInput field constants
+    private EditText[] feeFields;
+    private TextInputLayout[] feeLayouts;
+    private final boolean[] changedFields = new boolean[FeeInput.FIELD_COUNT];
+    private final Runnable recalculate = this::recalculate;
     private Button btnPlayers;
+    private Button btnSaveSession;
+    private TextView tvMonthSummary;
     private TextView tvPaymentForMember;
     private TextView tvPaymentForNonMember;
     private View cardResults;
-    private SharedPreferences sharedPreferences;
+    private AppSettings settings;
+    private MainViewModel viewModel;
+    private PlayerRepository playerRepository;
+    private final PlayerRepository.Listener rosterListener = players -> {
+        if (playerRepository.isLoaded()) {
+            btnPlayers.setText(getString(R.string.debtors_count, players.size()));
+        }
+    };
+
+    // Report saving stays off the UI thread
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ActivityResultLauncher<String> saveReportLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/plain"),
+                    this::savePerformanceReport);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        // Initialize SharedPreferences
-        sharedPreferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        // Initialize settings
+        settings = AppSettings.getInstance(this);
+        // Holds the last calculation across rotations
+        viewModel = new ViewModelProvider(this).get(MainViewModel.class);
 
         // Initialize views
         initializeViews();
@@ -49,12 +88,64 @@ public class MainActivity extends AppCompatActivity {
         // Set up text watchers for persistent fields
         setupPersistentFieldWatchers();
 
+        // Results follow the fields as they are typed
+        setupLiveCalculation();
+
         // Set click listeners
-        btnCalculate.setOnClickListener(v -> calculateFeePerPlayer());
         btnPlayers.setOnClickListener(v -> {
             Intent intent = new Intent(MainActivity.this, PlayersActivity.class);
             startActivity(intent);
         });
+        btnSaveSession.setOnClickListener(v -> viewModel.saveSession(this));
+
+        // Show what was already calculated before a rotation
+        FeeCalculator.Result lastResult = viewModel.getResult();
+        if (lastResult != null) {
+            showResults(lastResult);
+        }
+        observeViewModel();
+
+        // Read the roster now so the players screen opens from memory
+        playerRepository = PlayerRepository.getInstance(this);
+        playerRepository.addListener(rosterListener);
+        playerRepository.load();
+
+        // Hidden performance menu, so release users can record and send timings
+        findViewById(R.id.tv_main_title).setOnLongClickListener(v -> {
+            showPerformanceMenu();
+            return true;
+        });
+
+        // Runs after the first layout and draw, once the screen can take input
+        getWindow().getDecorView().post(() -> {
+            StartupTimings.mark("main_first_frame");
+            Long splashCreated = StartupTimings.getMark("splash_created");
+            if (splashCreated != null) {
+                PerfMetrics.recordMillis(PerfMetrics.STARTUP,
+                        StartupTimings.getMark("main_first_frame") - splashCreated);
+            }
+            reportFullyDrawn();
+            StartupTimings.report();
+            // Scheduling starts WorkManager, which the first frame need not wait for
+            Context appContext = getApplicationContext();
+            backgroundExecutor.execute(() -> BackupWorker.schedule(appContext));
+        });
+    }
+
+    private void observeViewModel() {
+        viewModel.canSaveSession().observe(this, btnSaveSession::setEnabled);
+        viewModel.getMonthTotal().observe(this, month -> {
+            if (month != null) {
+                tvMonthSummary.setText(getString(R.string.month_summary, month.sessions, Money.format(month.totalCents)));
+                tvMonthSummary.setVisibility(View.VISIBLE);
+            }
+        });
+        viewModel.getMessage().observe(this, messageRes -> {
+            if (messageRes != null) {
+                viewModel.clearMessage();
+                showMessage(getString(messageRes));
+            }
+        });
     }
 
     private void initializeViews() {
@@ -62,22 +153,48 @@ public class MainActivity extends AppCompatActivity {
         etNumOfMembers = findViewById(R.id.et_num_of_members);
         etShuttleFees = findViewById(R.id.et_shuttle_fees);
         etNumOfNonMembers = findViewById(R.id.et_num_of_non_members);
-        btnCalculate = findViewById(R.id.btn_calculate);
+        feeFields = new EditText[] {etCourtFee, etNumOfMembers, etShuttleFees, etNumOfNonMembers};
+        feeLayouts = new TextInputLayout[] {
+                findViewById(R.id.til_court_fee), findViewById(R.id.til_num_of_members),
+                findViewById(R.id.til_shuttle_fees), findViewById(R.id.til_num_of_non_members)};
         btnPlayers = findViewById(R.id.btn_players);
         tvPaymentForMember = findViewById(R.id.tv_payment_for_member);
         tvPaymentForNonMember = findViewById(R.id.tv_payment_for_non_member);
         cardResults = findViewById(R.id.card_results);
+        btnSaveSession = findViewById(R.id.btn_save_session);
+        tvMonthSummary = findViewById(R.id.tv_month_summary);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacks(recalculate);
+        playerRepository.removeListener(rosterListener);
+        // Let a report that is being saved finish
+        backgroundExecutor.shutdown();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        settings.flush();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        settings.flush();
     }
 
     private void loadPersistentData() {
         // Load saved court fee
-        String savedCourtFee = sharedPreferences.getString(KEY_COURT_FEE, "");
+        String savedCourtFee = settings.getCourtFeeText();
         if (!savedCourtFee.isEmpty()) {
             etCourtFee.setText(savedCourtFee);
         }
 
         // Load saved number of members
-        String savedNumMembers = sharedPreferences.getString(KEY_NUM_MEMBERS, "");
+        String savedNumMembers = settings.getMemberCountText();
         if (!savedNumMembers.isEmpty()) {
             etNumOfMembers.setText(savedNumMembers);
         }
@@ -94,7 +211,21 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable s) {
-                savePersistentData(KEY_COURT_FEE, s.toString());
+                settings.setCourtFeeText(s.toString());
+            }
+        });
+
+        // Watch for shuttle fee changes, for the totals on the players screen
+        etShuttleFees.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                settings.setShuttleFeeText(s.toString());
             }
         });
 
@@ -108,91 +239,136 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void afterTextChanged(Editable s) {
-                savePersistentData(KEY_NUM_MEMBERS, s.toString());
+                settings.setMemberCountText(s.toString());
             }
         });
     }
 
-    private void savePersistentData(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        editor.apply();
+    private void setupLiveCalculation() {
+        for (int i = 0; i < FeeInput.FIELD_COUNT; i++) {
+            int field = i;
+            feeFields[i].addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    changedFields[field] = true;
+                    // Waits for a pause in typing, so a burst of keys costs one recalculation
+                    mainHandler.removeCallbacks(recalculate);
+                    mainHandler.postDelayed(recalculate, RECALCULATE_DELAY_MS);
+                }
+            });
+        }
+        // Read the saved and restored fields once; posted, so it runs after the fields are restored
+        for (int i = 0; i < FeeInput.FIELD_COUNT; i++) {
+            changedFields[i] = true;
+        }
+        mainHandler.post(recalculate);
     }
 
-    private void calculateFeePerPlayer() {
-        String courtFeeStr = etCourtFee.getText().toString().trim();
-        String membersStr = etNumOfMembers.getText().toString().trim();
-        String shuttleFeesStr = etShuttleFees.getText().toString().trim();
-        String nonMembersStr = etNumOfNonMembers.getText().toString().trim();
-
-        // Validate inputs
-        if (courtFeeStr.isEmpty()) {
-            showError("කරුණාකර කෝට් ගාස්තුව ඇතුළත් කරන්න");
-            etCourtFee.requestFocus();
-            return;
+    private void recalculate() {
+        FeeInput input = viewModel.getInput();
+        boolean changed = false;
+        // Only the fields edited since last time are parsed again
+        for (int i = 0; i < FeeInput.FIELD_COUNT; i++) {
+            if (changedFields[i]) {
+                changedFields[i] = false;
+                changed |= input.set(i, feeFields[i].getText());
+            }
         }
-
-        if (membersStr.isEmpty()) {
-            showError("කරුණාකර සාමාජිකයන් ගණන ඇතුළත් කරන්න");
-            etNumOfMembers.requestFocus();
+        if (!changed) {
             return;
         }
 
-        if (shuttleFeesStr.isEmpty()) {
-            showError("කරුණාකර ෂටල් ගාස්තුව ඇතුළත් කරන්න");
-            etShuttleFees.requestFocus();
-            return;
+        long perfStart = PerfMetrics.begin();
+        for (int i = 0; i < FeeInput.FIELD_COUNT; i++) {
+            int error = input.errorOf(i);
+            CharSequence message = error != 0 ? getString(error) : null;
+            // Setting the same error again would replay its animation
+            if (!TextUtils.equals(feeLayouts[i].getError(), message)) {
+                feeLayouts[i].setError(message);
+            }
         }
-
-        if (nonMembersStr.isEmpty()) {
-            showError("කරුණාකර සාමාජික නොවන අය ගණන ඇතුළත් කරන්න");
-            etNumOfNonMembers.requestFocus();
-            return;
+        if (input.isComplete()) {
+            // Fees are read straight into whole cents so the shares add up exactly
+            showResults(viewModel.calculate(input.courtFeeCents(), input.shuttleFeeCents(),
+                    input.numMembers(), input.numNonMembers()));
+        } else {
+            cardResults.setVisibility(View.GONE);
+            viewModel.clearResult();
         }
+        PerfMetrics.end(PerfMetrics.CALCULATE_FEES, perfStart);
+    }
 
-        try {
-            double courtFee = Double.parseDouble(courtFeeStr);
-            int numMembers = Integer.parseInt(membersStr);
-            double shuttleFees = Double.parseDouble(shuttleFeesStr);
-            int numNonMembers = Integer.parseInt(nonMembersStr);
+    private void showResults(FeeCalculator.Result result) {
+        // Display results
+        tvPaymentForMember.setText(formatShare(result.memberShareCents, result.membersPayingExtraCent));
+        tvPaymentForNonMember.setText(formatShare(result.nonMemberShareCents, result.nonMembersPayingExtraCent));
 
-            // Validate inputs
-            if (courtFee < 0 || shuttleFees < 0) {
-                showError("ගාස්තුව සෘණ අගයක් විය නොහැක");
-                return;
-            }
+        // Make results card visible
+        cardResults.setVisibility(View.VISIBLE);
+    }
 
-            if (numMembers < 0 || numNonMembers < 0) {
-                showError("සංඛ්‍යා සෘණ අගයක් විය නොහැක");
-                return;
-            }
+    private void showPerformanceMenu() {
+        String[] options = {
+                getString(PerfMetrics.isEnabled() ? R.string.perf_recording_off : R.string.perf_recording_on),
+                getString(R.string.perf_save_report)
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.perf_menu_title))
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) {
+                        PerfMetrics.setEnabled(!PerfMetrics.isEnabled());
+                        showMessage(getString(PerfMetrics.isEnabled()
+                                ? R.string.perf_recording_started : R.string.perf_recording_stopped));
+                    } else {
+                        saveReportLauncher.launch("bmapp-performance.txt");
+                    }
+                })
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+    }
 
-            int totalPlayers = numMembers + numNonMembers;
-            if (totalPlayers == 0) {
-                showError("අවම වශයෙන් එක් ක්‍රීඩකයෙකු සිටිය යුතුය");
-                return;
+    private void savePerformanceReport(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        Context appContext = getApplicationContext();
+        backgroundExecutor.execute(() -> {
+            boolean saved;
+            try (OutputStream out = appContext.getContentResolver().openOutputStream(uri, "wt")) {
+                if (out == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                PerfMetrics.writeReport(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                saved = true;
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save performance report", e);
+                saved = false;
             }
+            boolean result = saved;
+            mainHandler.post(() -> {
+                if (!isDestroyed()) {
+                    showMessage(getString(result ? R.string.perf_report_saved : R.string.perf_report_failed));
+                }
+            });
+        });
+    }
 
-            // Calculate payments - total fees divided equally among all players
-            double courtFeesPerPlayer = courtFee / totalPlayers;
-            double shuttleFeesPerPlayer = shuttleFees / totalPlayers;
-            double paymentForNonMember = courtFeesPerPlayer + shuttleFeesPerPlayer;
-            double paymentForMember = shuttleFeesPerPlayer - (courtFee / numMembers) + courtFeesPerPlayer; // Members get court fee discount
-
-
-            // Display results (same amount for both members and non-members in this version)
-            tvPaymentForMember.setText(String.format(Locale.getDefault(), "රු %.2f", paymentForMember));
-            tvPaymentForNonMember.setText(String.format(Locale.getDefault(), "රු %.2f", paymentForNonMember));
-
-            // Make results card visible
-            cardResults.setVisibility(View.VISIBLE);
-
-        } catch (NumberFormatException e) {
-            showError("කරුණාකර වලංගු සංඛ්‍යා ඇතුළත් කරන්න");
+    private String formatShare(long shareCents, int playersPayingExtraCent) {
+        // When the fee doesn't split evenly some players pay one cent more
+        StringBuilder share = Money.append(new StringBuilder(2 * Money.MAX_CHARS), shareCents);
+        if (playersPayingExtraCent > 0) {
+            Money.append(share.append(" / "), shareCents + 1);
         }
+        return share.toString();
     }
 
-    private void showError(String message) {
+    private void showMessage(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 }
@@ -0,0 +1,162 @@
+package com.example.bmapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+import androidx.lifecycle.ViewModel;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Calculation state of the main screen.
+ *
+ * A rotation reuses the last result instead of losing the results card.
+ * Only the inputs of the calculation go into the {@link SavedStateHandle};
+ * after the process has been killed the result is worked out again from
+ * them, which is cheap and gives exactly the same cents.
+ *
+ * The fields as typed are read through a {@link FeeInput} kept here, so a
+ * rotation, which sets the same text again, is not taken for an edit.
+ */
+public class MainViewModel extends ViewModel {
+
+    // {playedAt, courtFeeCents, shuttleFeeCents, numMembers, numNonMembers}
+    private static final String KEY_CALCULATION = "calculation";
+    private static final String KEY_SESSION_SAVED = "session_saved";
+
+    private final SavedStateHandle savedState;
+    private final FeeInput input = new FeeInput();
+    private FeeCalculator.Result result;
+    private SessionLedger.Session lastSession;
+
+    // Ledger writes stay off the UI thread and finish even if the screen is rotated meanwhile
+    private final ExecutorService ledgerExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final MutableLiveData<Boolean> canSaveSession = new MutableLiveData<>(false);
+    private final MutableLiveData<SessionLedger.PeriodTotal> monthTotal = new MutableLiveData<>();
+    private final MutableLiveData<Integer> message = new MutableLiveData<>();
+
+    public MainViewModel(SavedStateHandle savedState) {
+        this.savedState = savedState;
+        long[] inputs = savedState.get(KEY_CALCULATION);
+        if (inputs != null) {
+            restore(inputs[0], inputs[1], inputs[2], (int) inputs[3], (int) inputs[4]);
+            canSaveSession.setValue(!Boolean.TRUE.equals(savedState.get(KEY_SESSION_SAVED)));
+        }
+    }
+
+    /** The fee fields as last read. Main thread only. */
+    FeeInput getInput() {
+        return input;
+    }
+
+    /** The last result, or null if nothing has been calculated yet. */
+    public FeeCalculator.Result getResult() {
+        return result;
+    }
+
+    public LiveData<Boolean> canSaveSession() {
+        return canSaveSession;
+    }
+
+    /** This month's totals, once a session has been saved from this screen. */
+    public LiveData<SessionLedger.PeriodTotal> getMonthTotal() {
+        return monthTotal;
+    }
+
+    /** A string resource to show once, until {@link #clearMessage} is called. */
+    public LiveData<Integer> getMessage() {
+        return message;
+    }
+
+    public void clearMessage() {
+        message.setValue(null);
+    }
+
+    /**
+     * Splits the fees and keeps the result as the session to save. The same
+     * inputs as last time keep the last result, and whether it was saved.
+     *
+     * @throws ArithmeticException if the amounts are too large to split
+     */
+    public FeeCalculator.Result calculate(long courtFeeCents, long shuttleFeeCents, int numMembers, int numNonMembers) {
+        SessionLedger.Session last = lastSession;
+        if (last != null && last.courtFeeCents == courtFeeCents && last.shuttleFeeCents == shuttleFeeCents
+                && last.numMembers == numMembers && last.numNonMembers == numNonMembers) {
+            // Same session as before, such as the fields being read again after the process was killed
+            return result;
+        }
+        long playedAt = System.currentTimeMillis();
+        restore(playedAt, courtFeeCents, shuttleFeeCents, numMembers, numNonMembers);
+        savedState.set(KEY_CALCULATION,
+                new long[] {playedAt, courtFeeCents, shuttleFeeCents, numMembers, numNonMembers});
+        savedState.set(KEY_SESSION_SAVED, false);
+        canSaveSession.setValue(true);
+        return result;
+    }
+
+    /**
+     * Forgets the last result, once a field no longer holds a usable value.
+     * The same fees typed in again are then a new session that can be saved,
+     * such as the next game of an evening.
+     */
+    public void clearResult() {
+        if (lastSession == null) {
+            return;
+        }
+        result = null;
+        lastSession = null;
+        savedState.remove(KEY_CALCULATION);
+        savedState.remove(KEY_SESSION_SAVED);
+        canSaveSession.setValue(false);
+    }
+
+    /** Records the last calculation in the ledger. Each calculation is saved at most once. */
+    public void saveSession(Context context) {
+        if (!Boolean.TRUE.equals(canSaveSession.getValue())) {
+            return;
+        }
+        SessionLedger.Session session = lastSession;
+        canSaveSession.setValue(false);
+
+        Context appContext = context.getApplicationContext();
+        ledgerExecutor.execute(() -> {
+            SessionLedger ledger = SessionLedger.getInstance(appContext);
+            // The main screen only has head counts, so nobody is named; split nights record named attendees
+            ledger.recordSession(session, Collections.emptyList());
+            SessionLedger.PeriodTotal month = ledger.getPeriodTotal(SessionLedger.PERIOD_MONTH, session.playedAt);
+            mainHandler.post(() -> {
+                // A result calculated while this one was saving can still be saved
+                if (lastSession == session) {
+                    savedState.set(KEY_SESSION_SAVED, true);
+                }
+                if (month != null) {
+                    monthTotal.setValue(month);
+                }
+                message.setValue(R.string.session_saved);
+            });
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        // Let a session that is being saved finish
+        ledgerExecutor.shutdown();
+    }
+
+    private void restore(long playedAt, long courtFeeCents, long shuttleFeeCents, int numMembers, int numNonMembers) {
+        // A fresh result, so a failed calculation leaves the previous one intact
+        FeeCalculator.Result calculated = new FeeCalculator.Result();
+        FeeCalculator.calculate(courtFeeCents, shuttleFeeCents, numMembers, numNonMembers, calculated);
+        result = calculated;
+        lastSession = new SessionLedger.Session(playedAt, courtFeeCents, shuttleFeeCents,
+                numMembers, numNonMembers, calculated);
+    }
+}
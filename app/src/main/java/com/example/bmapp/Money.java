@@ -0,0 +1,246 @@
+package com.example.bmapp;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Rupee amounts as whole cents, read from and written as text.
+ *
+ * Typed amounts go straight to cents without passing through a double, and
+ * anything past the second decimal place is rounded half away from zero, so
+ * "0.125" is 13 cents on every screen. A '.' is always a decimal point, as
+ * that is what numeric keyboards type; the locale's own decimal separator
+ * works too, and its grouping separator may be typed between digits.
+ *
+ * Amounts are shown as "රු 1,234.50" with the device locale's separators.
+ * Formatting writes into a caller's char array, so binding a list row
+ * allocates nothing.
+ */
+public final class Money {
+
+    /** What {@link #parseCents} returns for text that is not an amount. */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    /** Room needed by {@link #format(long, char[])} for any amount. */
+    public static final int MAX_CHARS = 32;
+
+    private static final String PREFIX = "රු ";
+    private static final String SYMBOL = "රු";
+    // More rupee digits than this could overflow a long of cents
+    private static final int MAX_RUPEE_DIGITS = 16;
+
+    private static final class Symbols {
+        final Locale locale;
+        final char grouping;
+        final char decimal;
+
+        Symbols(Locale locale) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            this.locale = locale;
+            this.grouping = symbols.getGroupingSeparator();
+            this.decimal = symbols.getDecimalSeparator();
+        }
+    }
+
+    private static volatile Symbols symbols = new Symbols(Locale.getDefault());
+
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_CHARS];
+        }
+    };
+
+    private Money() {
+    }
+
+    /**
+     * Reads an amount in rupees, such as "250", "1,250.50" or "රු 12.5", as
+     * cents. Returns {@link #INVALID} if the text is not an amount.
+     */
+    public static long parseCents(CharSequence text) {
+        Symbols locale = symbols();
+        char decimal = locale.decimal;
+        char grouping = locale.grouping;
+        // A '.' is always the decimal point, so it can't also group digits
+        if (grouping == '.' || grouping == decimal) {
+            grouping = decimal == ',' ? 0 : ',';
+        }
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && isSpace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && isSpace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (startsWith(text, start, end, SYMBOL)) {
+            start += SYMBOL.length();
+            while (start < end && isSpace(text.charAt(start))) {
+                start++;
+            }
+        }
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+
+        boolean anyDigits = false;
+        long rupees = 0;
+        int rupeeDigits = 0;
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        boolean inFraction = false;
+        // Digits since the last grouping separator, or -1 before the first
+        int groupDigits = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                anyDigits = true;
+                if (!inFraction) {
+                    // Leading zeros don't count towards the limit
+                    if ((rupees > 0 || c != '0') && ++rupeeDigits > MAX_RUPEE_DIGITS) {
+                        return INVALID;
+                    }
+                    rupees = rupees * 10 + (c - '0');
+                    if (groupDigits >= 0 && ++groupDigits > 3) {
+                        return INVALID;
+                    }
+                } else if (++fractionDigits <= 2) {
+                    fraction = fraction * 10 + (c - '0');
+                } else if (fractionDigits == 3) {
+                    roundUp = c >= '5';
+                }
+            } else if (c == '.' || c == decimal) {
+                if (inFraction || (groupDigits >= 0 && groupDigits != 3)) {
+                    return INVALID;
+                }
+                inFraction = true;
+            } else if (c == grouping && grouping != 0 && !inFraction && anyDigits
+                    && (groupDigits < 0 || groupDigits == 3)) {
+                // Separators go between groups of three digits, before the decimal point
+                groupDigits = 0;
+            } else {
+                return INVALID;
+            }
+        }
+        if (!anyDigits || (!inFraction && groupDigits >= 0 && groupDigits != 3)) {
+            return INVALID;
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = rupees * 100 + fraction + (roundUp ? 1 : 0);
+        return negative ? -cents : cents;
+    }
+
+    /** Rupees held as a double, such as the legacy roster's saved amounts, as cents. */
+    public static long toCents(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    /**
+     * Writes {@code cents} as "රු 1,234.50" into {@code out}, which needs
+     * {@link #MAX_CHARS} of room, and returns how many chars were written.
+     */
+    public static int format(long cents, char[] out) {
+        Symbols locale = symbols();
+        return write(cents, out, true, locale.grouping, locale.decimal);
+    }
+
+    /** Appends {@code cents} as "රු 1,234.50" to {@code out}. */
+    public static StringBuilder append(StringBuilder out, long cents) {
+        char[] scratch = SCRATCH.get();
+        return out.append(scratch, 0, format(cents, scratch));
+    }
+
+    /** {@code cents} as "රු 1,234.50", for text shown once rather than per row. */
+    public static String format(long cents) {
+        char[] scratch = SCRATCH.get();
+        return new String(scratch, 0, format(cents, scratch));
+    }
+
+    /**
+     * Appends {@code cents} as a plain decimal such as "1234.50" or "-0.05",
+     * for files and for prefilling an amount field. Never depends on locale.
+     */
+    public static StringBuilder appendPlain(StringBuilder out, long cents) {
+        char[] scratch = SCRATCH.get();
+        return out.append(scratch, 0, write(cents, scratch, false, (char) 0, '.'));
+    }
+
+    /** {@code cents} as a plain decimal, see {@link #appendPlain}. */
+    public static String toPlainText(long cents) {
+        char[] scratch = SCRATCH.get();
+        return new String(scratch, 0, write(cents, scratch, false, (char) 0, '.'));
+    }
+
+    // Fills out from the right: cents, decimal point, then rupees with a separator every three digits
+    private static int write(long cents, char[] out, boolean prefix, char grouping, char decimal) {
+        if (cents == INVALID) {
+            throw new IllegalArgumentException("Not an amount");
+        }
+        long abs = Math.abs(cents);
+        long rupees = abs / 100;
+        int fraction = (int) (abs % 100);
+        int digits = 1;
+        for (long rest = rupees / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int separators = grouping != 0 ? (digits - 1) / 3 : 0;
+        int length = (prefix ? PREFIX.length() : 0) + (cents < 0 ? 1 : 0) + digits + separators + 3;
+
+        int position = length;
+        out[--position] = (char) ('0' + fraction % 10);
+        out[--position] = (char) ('0' + fraction / 10);
+        out[--position] = decimal;
+        for (int i = 0; i < digits; i++) {
+            if (separators > 0 && i > 0 && i % 3 == 0) {
+                out[--position] = grouping;
+            }
+            out[--position] = (char) ('0' + rupees % 10);
+            rupees /= 10;
+        }
+        if (cents < 0) {
+            out[--position] = '-';
+        }
+        if (prefix) {
+            PREFIX.getChars(0, PREFIX.length(), out, 0);
+        }
+        return length;
+    }
+
+    // The separators of the current default locale, looked up again only when it changes
+    private static Symbols symbols() {
+        Symbols current = symbols;
+        Locale locale = Locale.getDefault();
+        if (current.locale != locale) {
+            current = new Symbols(locale);
+            symbols = current;
+        }
+        return current;
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean startsWith(CharSequence text, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bmapp;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Player ids by name, compared the way the store's NOCASE unique index
+ * compares them, so duplicate checks are a hash lookup in memory and agree
+ * with what the database would accept.
+ *
+ * Any thread may read while one thread changes it; {@link RosterWriter}
+ * keeps it in step with the roster on its writer thread.
+ */
+public final class NameIndex {
+
+    private final Map<String, Long> idsByKey = new ConcurrentHashMap<>();
+
+    /** Folds a name the way NOCASE compares it: ASCII letters only. */
+    public static String key(String name) {
+        char[] chars = null;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                if (chars == null) {
+                    chars = name.toCharArray();
+                }
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return chars == null ? name : new String(chars);
+    }
+
+    /** The id of the player called {@code name}, or 0 if there is none. */
+    public long idOf(String name) {
+        Long id = idsByKey.get(key(name));
+        return id != null ? id : 0;
+    }
+
+    /** Whether a player other than {@code excludeId} uses {@code name}. */
+    public boolean isTaken(String name, long excludeId) {
+        Long id = idsByKey.get(key(name));
+        return id != null && id != excludeId;
+    }
+
+    public void put(String name, long id) {
+        idsByKey.put(key(name), id);
+    }
+
+    public void remove(String name) {
+        idsByKey.remove(key(name));
+    }
+
+    public void clear() {
+        idsByKey.clear();
+    }
+
+    /** A copy of every {@link #key}, for checks against a moment's roster. */
+    public Set<String> copyKeys() {
+        return new HashSet<>(idsByKey.keySet());
+    }
+}
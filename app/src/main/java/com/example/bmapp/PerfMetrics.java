@@ -0,0 +1,239 @@
+package com.example.bmapp;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lightweight timings for the app's hot paths plus frame jank counts.
+ *
+ * Callers bracket work with {@link #begin} and {@link #end}. While metrics
+ * are off, {@code begin} returns 0 and {@code end} returns at once, so the
+ * cost is one static field read. Metrics are always on in debug builds,
+ * where {@link PerfOverlay} shows them live. In release builds they are
+ * switched on from the main screen's hidden menu (long-press the title), so
+ * users can save a report to attach to a slow-screen complaint.
+ *
+ * Frame times come from {@link FrameMetrics} for whichever activity is
+ * resumed. Slow and frozen frames follow the Android vitals thresholds.
+ */
+public final class PerfMetrics {
+
+    // Hot paths
+    public static final int STARTUP = 0;
+    public static final int LOAD_PLAYERS = 1;
+    public static final int SAVE_PLAYER = 2;
+    public static final int ROW_INFLATE = 3;
+    public static final int ROW_BIND = 4;
+    public static final int CALCULATE_FEES = 5;
+
+    private static final String[] NAMES = {
+            "startup (splash -> main)", "load players", "save player",
+            "row inflate", "row bind", "calculate fees"
+    };
+
+    private static final long SLOW_FRAME_NANOS = 16_000_000;
+    private static final long FROZEN_FRAME_NANOS = 700_000_000;
+
+    // Presence of this file switches metrics on in release builds; checking it is one stat call
+    private static final String ENABLED_MARKER = "perf_metrics_enabled";
+
+    private static volatile boolean enabled;
+    private static File markerFile;
+
+    private static final LatencyHistogram[] latencies = new LatencyHistogram[NAMES.length];
+    private static final LatencyHistogram frameTimes = new LatencyHistogram();
+    private static final AtomicLong slowFrames = new AtomicLong();
+    private static final AtomicLong frozenFrames = new AtomicLong();
+
+    private static Handler frameMetricsHandler;
+
+    static {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    private PerfMetrics() {
+    }
+
+    /** Called once from {@link BMApplication#onCreate}. */
+    static void init(Application application) {
+        markerFile = new File(application.getNoBackupFilesDir(), ENABLED_MARKER);
+        enabled = BuildConfig.DEBUG || markerFile.exists();
+        application.registerActivityLifecycleCallbacks(new FrameTracker());
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Switches recording on or off for this and later launches. */
+    static void setEnabled(boolean on) {
+        enabled = on || BuildConfig.DEBUG;
+        try {
+            if (on) {
+                markerFile.createNewFile();
+            } else {
+                markerFile.delete();
+            }
+        } catch (IOException e) {
+            // Still applies to this launch
+        }
+    }
+
+    /** Start of a timed section; pass the result to {@link #end}. */
+    public static long begin() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void end(int metric, long beginNanos) {
+        if (beginNanos == 0) {
+            return;
+        }
+        latencies[metric].recordNanos(System.nanoTime() - beginNanos);
+    }
+
+    /** For durations measured elsewhere, such as startup marks. */
+    public static void recordMillis(int metric, long millis) {
+        if (enabled) {
+            latencies[metric].recordMicros(millis * 1000);
+        }
+    }
+
+    static void recordFrame(long totalNanos) {
+        frameTimes.recordNanos(totalNanos);
+        if (totalNanos > FROZEN_FRAME_NANOS) {
+            frozenFrames.incrementAndGet();
+        } else if (totalNanos > SLOW_FRAME_NANOS) {
+            slowFrames.incrementAndGet();
+        }
+    }
+
+    static void reset() {
+        for (LatencyHistogram histogram : latencies) {
+            histogram.reset();
+        }
+        frameTimes.reset();
+        slowFrames.set(0);
+        frozenFrames.set(0);
+    }
+
+    /** A few lines for the debug overlay. */
+    static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < latencies.length; i++) {
+            LatencyHistogram histogram = latencies[i];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%-14.14s p50 %s p95 %s n %d\n", NAMES[i],
+                    millis(histogram.getPercentileMicros(50)), millis(histogram.getPercentileMicros(95)),
+                    histogram.getCount()));
+        }
+        sb.append(String.format(Locale.US, "frames %d slow %d frozen %d p95 %s",
+                frameTimes.getCount(), slowFrames.get(), frozenFrames.get(),
+                millis(frameTimes.getPercentileMicros(95))));
+        return sb.toString();
+    }
+
+    /** Full report for attaching to a bug report. */
+    static void writeReport(Writer out) throws IOException {
+        out.write(String.format(Locale.US, "BMApp performance report\n%s %s, Android %d\n\n",
+                Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT));
+        out.write("metric                    count     mean      p50      p90      p99      max\n");
+        for (int i = 0; i < latencies.length; i++) {
+            writeRow(out, NAMES[i], latencies[i]);
+        }
+        writeRow(out, "frame time", frameTimes);
+        out.write(String.format(Locale.US, "\nslow frames (>16 ms): %d\nfrozen frames (>700 ms): %d\n",
+                slowFrames.get(), frozenFrames.get()));
+        out.flush();
+    }
+
+    private static void writeRow(Writer out, String name, LatencyHistogram histogram) throws IOException {
+        out.write(String.format(Locale.US, "%-24s %6d %8s %8s %8s %8s %8s\n", name, histogram.getCount(),
+                millis(histogram.getMeanMicros()), millis(histogram.getPercentileMicros(50)),
+                millis(histogram.getPercentileMicros(90)), millis(histogram.getPercentileMicros(99)),
+                millis(histogram.getMaxMicros())));
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.US, "%.1fms", micros / 1000.0);
+    }
+
+    // Follows the resumed activity's window, and shows the overlay in debug builds
+    private static final class FrameTracker implements Application.ActivityLifecycleCallbacks,
+            Window.OnFrameMetricsAvailableListener {
+
+        private PerfOverlay overlay;
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            if (!enabled) {
+                return;
+            }
+            if (frameMetricsHandler == null) {
+                HandlerThread thread = new HandlerThread("FrameMetrics");
+                thread.start();
+                frameMetricsHandler = new Handler(thread.getLooper());
+            }
+            activity.getWindow().addOnFrameMetricsAvailableListener(this, frameMetricsHandler);
+            if (BuildConfig.DEBUG) {
+                overlay = PerfOverlay.attach(activity);
+            }
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            if (frameMetricsHandler == null) {
+                return;
+            }
+            try {
+                activity.getWindow().removeOnFrameMetricsAvailableListener(this);
+            } catch (IllegalArgumentException e) {
+                // Metrics were switched on while this activity was already resumed
+            }
+            if (overlay != null) {
+                overlay.detach();
+                overlay = null;
+            }
+        }
+
+        @Override
+        public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+            recordFrame(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+}
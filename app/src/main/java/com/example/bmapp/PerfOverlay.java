@@ -0,0 +1,56 @@
+package com.example.bmapp;
+
+import android.app.Activity;
+import android.graphics.Typeface;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+/**
+ * Debug-build overlay with the current {@link PerfMetrics} summary, pinned
+ * to the bottom of the resumed activity and refreshed once a second. It
+ * doesn't take touches, so the screen underneath stays usable.
+ */
+final class PerfOverlay {
+
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private final TextView textView;
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            textView.setText(PerfMetrics.summary());
+            textView.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    private PerfOverlay(TextView textView) {
+        this.textView = textView;
+    }
+
+    static PerfOverlay attach(Activity activity) {
+        TextView textView = new TextView(activity);
+        textView.setTypeface(Typeface.MONOSPACE);
+        textView.setTextSize(10);
+        textView.setTextColor(0xFFFFFFFF);
+        textView.setBackgroundColor(0xAA000000);
+        textView.setPadding(12, 8, 12, 8);
+
+        ViewGroup decor = (ViewGroup) activity.getWindow().getDecorView();
+        decor.addView(textView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT,
+                ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.START));
+
+        PerfOverlay overlay = new PerfOverlay(textView);
+        overlay.refresh.run();
+        return overlay;
+    }
+
+    void detach() {
+        textView.removeCallbacks(refresh);
+        ViewGroup parent = (ViewGroup) textView.getParent();
+        if (parent != null) {
+            parent.removeView(textView);
+        }
+    }
+}
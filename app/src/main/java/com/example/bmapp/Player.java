@@ -0,0 +1,41 @@
+package com.example.bmapp;
+
+/**
+ * A player on the roster. Immutable, so the list adapter can diff old and new
+ * lists safely; edits replace the instance.
+ */
+public class Player {
+    private final long id;
+    private final String name;
+    private final long amountCents;
+    // Members have prepaid the court; see FeeCalculator
+    private final boolean member;
+
+    public Player(long id, String name, long amountCents) {
+        this(id, name, amountCents, false);
+    }
+
+    public Player(long id, String name, long amountCents, boolean member) {
+        this.id = id;
+        this.name = name;
+        this.amountCents = amountCents;
+        this.member = member;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Amount in whole cents, as stored and summed. */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    public boolean isMember() {
+        return member;
+    }
+}
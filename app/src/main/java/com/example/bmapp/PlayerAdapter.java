@@ -0,0 +1,107 @@
+package com.example.bmapp;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.button.MaterialButton;
+
+/**
+ * Recycled adapter for the players table. Lists are diffed on a background
+ * thread by {@link ListAdapter}, so only rows that actually changed are rebound.
+ */
+public class PlayerAdapter extends ListAdapter<Player, PlayerAdapter.PlayerViewHolder> {
+
+    public interface OnPlayerActionListener {
+        void onPlayerClicked(Player player);
+
+        void onPlayerDeleteClicked(Player player);
+    }
+
+    private static final DiffUtil.ItemCallback<Player> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<Player>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull Player oldItem,
+                                               @NonNull Player newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull Player oldItem,
+                                                  @NonNull Player newItem) {
+                    return oldItem.getName().equals(newItem.getName())
+                            && oldItem.getAmountCents() == newItem.getAmountCents();
+                }
+            };
+
+    private final OnPlayerActionListener listener;
+
+    public PlayerAdapter(OnPlayerActionListener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public PlayerViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        long perfStart = PerfMetrics.begin();
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_player_row, parent, false);
+        PlayerViewHolder holder = new PlayerViewHolder(view);
+        PerfMetrics.end(PerfMetrics.ROW_INFLATE, perfStart);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PlayerViewHolder holder, int position) {
+        long perfStart = PerfMetrics.begin();
+        Player player = getItem(position);
+        holder.tvPlayerName.setText(player.getName());
+        // Written into the holder's own buffer; TextView keeps a view of it rather than a copy
+        int length = Money.format(player.getAmountCents(), holder.amountText);
+        holder.tvPlayerAmount.setText(holder.amountText, 0, length);
+        PerfMetrics.end(PerfMetrics.ROW_BIND, perfStart);
+    }
+
+    class PlayerViewHolder extends RecyclerView.ViewHolder {
+        final TextView tvPlayerName;
+        final TextView tvPlayerAmount;
+        final MaterialButton btnDelete;
+        final char[] amountText = new char[Money.MAX_CHARS];
+
+        PlayerViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvPlayerName = itemView.findViewById(R.id.tv_player_name);
+            tvPlayerAmount = itemView.findViewById(R.id.tv_player_amount);
+            btnDelete = itemView.findViewById(R.id.btn_delete_player);
+
+            // Make the entire row clickable for editing
+            itemView.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.onPlayerClicked(getItem(position));
+                }
+            });
+
+            // Delete button functionality
+            btnDelete.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.onPlayerDeleteClicked(getItem(position));
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bmapp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams players from CSV rows of {@code name,amount}.
+ *
+ * The file is read one record at a time, so memory stays bounded by the batch
+ * size and the longest allowed row rather than the file size. Rows are checked
+ * with the same rules as the add-player dialog, duplicates are looked up in a
+ * hash set of name keys (existing players plus rows already accepted), and
+ * accepted players go to the {@link BatchSink} in batches of
+ * {@link #BATCH_SIZE}. Rejected rows are reported by line number; rows the
+ * sink leaves out, such as names added elsewhere during the import, are only
+ * counted.
+ *
+ * Fields may be quoted, with {@code ""} for a literal quote. A first row
+ * whose name column is {@code name} is treated as a header and skipped.
+ */
+class PlayerCsvImporter {
+
+    interface BatchSink {
+        /**
+         * Stores one batch; a batch is committed as a whole.
+         *
+         * @return how many of the players were stored
+         */
+        int insertBatch(List<Player> players) throws InterruptedException;
+    }
+
+    /** A row that was not imported. */
+    static class RowError {
+        final long lineNumber;
+        final int messageRes;
+
+        RowError(long lineNumber, int messageRes) {
+            this.lineNumber = lineNumber;
+            this.messageRes = messageRes;
+        }
+    }
+
+    static class Report {
+        int imported;
+        int rejected;
+        /** The first {@link #MAX_REPORTED_ERRORS} rejected rows, in file order. */
+        final List<RowError> errors = new ArrayList<>();
+    }
+
+    static final int BATCH_SIZE = 500;
+    static final int MAX_REPORTED_ERRORS = 200;
+    static final int MAX_ROW_LENGTH = 4096;
+
+    private final Set<String> takenNameKeys;
+    private final BatchSink sink;
+    private long nextId;
+
+    /**
+     * @param takenNameKeys {@link NameIndex#key} of every existing
+     *                      player; accepted rows are added to it
+     * @param firstId       id for the first imported player
+     */
+    PlayerCsvImporter(Set<String> takenNameKeys, long firstId, BatchSink sink) {
+        this.takenNameKeys = takenNameKeys;
+        this.nextId = firstId;
+        this.sink = sink;
+    }
+
+    /** The id the next player added after this import should get. */
+    long getNextId() {
+        return nextId;
+    }
+
+    Report importFrom(Reader reader) throws IOException, InterruptedException {
+        Report report = new Report();
+        CsvRecordReader records = new CsvRecordReader(reader);
+        List<Player> batch = new ArrayList<>(BATCH_SIZE);
+        List<String> fields = new ArrayList<>(2);
+
+        boolean firstRecord = true;
+        while (records.next(fields)) {
+            long lineNumber = records.getRecordLine();
+            boolean header = firstRecord && !fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("name");
+            firstRecord = false;
+            if (header || isBlank(fields)) {
+                continue;
+            }
+
+            int error = records.wasTruncated() ? R.string.error_csv_row_too_long : checkRow(fields);
+            if (error != 0) {
+                report.rejected++;
+                if (report.errors.size() < MAX_REPORTED_ERRORS) {
+                    report.errors.add(new RowError(lineNumber, error));
+                }
+                continue;
+            }
+
+            String name = fields.get(0).trim();
+            takenNameKeys.add(NameIndex.key(name));
+            batch.add(new Player(nextId++, name, Money.parseCents(fields.get(1))));
+            if (batch.size() == BATCH_SIZE) {
+                insert(batch, report);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch, report);
+        }
+        return report;
+    }
+
+    private void insert(List<Player> batch, Report report) throws InterruptedException {
+        int stored = sink.insertBatch(Collections.unmodifiableList(batch));
+        report.imported += stored;
+        report.rejected += batch.size() - stored;
+    }
+
+    private int checkRow(List<String> fields) {
+        if (fields.size() != 2) {
+            return R.string.error_csv_columns;
+        }
+        String name = fields.get(0).trim();
+        int error = PlayerValidation.check(name, fields.get(1).trim());
+        if (error != 0) {
+            return error;
+        }
+        if (takenNameKeys.contains(NameIndex.key(name))) {
+            return R.string.error_duplicate_player;
+        }
+        return 0;
+    }
+
+    private static boolean isBlank(List<String> fields) {
+        return fields.size() == 1 && fields.get(0).trim().isEmpty();
+    }
+
+    /**
+     * Minimal RFC 4180 reader: comma separated, optional quotes, CRLF or LF.
+     * Quoted fields may span lines. Rows longer than {@link #MAX_ROW_LENGTH}
+     * characters are consumed but flagged instead of being buffered whole.
+     */
+    static final class CsvRecordReader {
+        private static final int BOM = '\uFEFF';
+
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+        private long line = 1;
+        private long recordLine;
+        private int rowLength;
+        private boolean truncated;
+        private int pushback = -2;
+        private boolean started;
+
+        CsvRecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        long getRecordLine() {
+            return recordLine;
+        }
+
+        boolean wasTruncated() {
+            return truncated;
+        }
+
+        /** Reads the next record into {@code fields}; returns false at end of input. */
+        boolean next(List<String> fields) throws IOException {
+            fields.clear();
+            field.setLength(0);
+            rowLength = 0;
+            truncated = false;
+            recordLine = line;
+
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            boolean quoted = false;
+            boolean fieldStart = true;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        break;
+                    } else if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            append('"');
+                        } else {
+                            quoted = false;
+                            c = following;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        append((char) c);
+                    }
+                } else if (c == '"' && fieldStart) {
+                    quoted = true;
+                    fieldStart = false;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    fieldStart = true;
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int following = read();
+                        if (following != '\n') {
+                            pushback = following;
+                        }
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    break;
+                } else {
+                    append((char) c);
+                    fieldStart = false;
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        private void append(char c) {
+            if (++rowLength > MAX_ROW_LENGTH) {
+                truncated = true;
+                return;
+            }
+            field.append(c);
+        }
+
+        private int read() throws IOException {
+            int c;
+            if (pushback != -2) {
+                c = pushback;
+                pushback = -2;
+            } else {
+                c = reader.read();
+            }
+            if (!started) {
+                started = true;
+                if (c == BOM) {
+                    return read();
+                }
+            }
+            return c;
+        }
+    }
+}
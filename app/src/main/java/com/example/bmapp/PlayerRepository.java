@@ -0,0 +1,220 @@
+package com.example.bmapp;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Process-wide roster kept in memory on top of {@link PlayerStore}.
+ *
+ * The first {@link #load} reads the store on a background thread. The first
+ * page is published as soon as it is read and the rest once everything is
+ * in, so later visits to the players screen are served from memory. Readers
+ * on any thread get immutable {@link RosterColumns} snapshots without
+ * locking, and listeners hear about the latest one on the main thread. A
+ * snapshot after an edit shares all but one chunk of its columns with the
+ * one before.
+ *
+ * Changes may be asked for from any thread. They are made one at a time on a
+ * single writer thread, then written to the store in batches; see
+ * {@link RosterWriter}. Duplicate-name checks use an in-memory hash index,
+ * and the sum of all amounts is kept up to date by each change rather than
+ * by adding up the roster again. Changes made through this class can be
+ * undone and redone; see {@link RosterHistory}. A change that can't be saved
+ * is dropped from memory as well, and listeners are told.
+ */
+public final class PlayerRepository {
+
+    public interface Listener {
+        void onPlayersChanged(RosterColumns players);
+
+        /**
+         * A change could not be saved and was dropped; the roster was read
+         * back from the store and is announced through
+         * {@link #onPlayersChanged} as well.
+         */
+        default void onChangeLost() {
+        }
+    }
+
+    private static final String TAG = "PlayerRepository";
+
+    private static PlayerRepository instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final RosterWriter writer;
+
+    // Main thread only
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public static synchronized PlayerRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlayerRepository(PlayerStore.getInstance(context));
+        }
+        return instance;
+    }
+
+    private PlayerRepository(PlayerStore playerStore) {
+        writer = new RosterWriter(playerStore, mainHandler::post, new RosterWriter.Callback() {
+            @Override
+            public void onPublished(RosterColumns players) {
+                // Copy so a listener may unregister itself while being notified
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onPlayersChanged(players);
+                }
+            }
+
+            @Override
+            public void onWriteFailed(RuntimeException e) {
+                Log.e(TAG, "Could not save roster change", e);
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.onChangeLost();
+                }
+            }
+        });
+    }
+
+    /** Starts reading the roster if nobody has yet. Safe to call repeatedly. */
+    public void load() {
+        writer.load();
+    }
+
+    public boolean isLoaded() {
+        return writer.isLoaded();
+    }
+
+    /** The latest roster in id order; never modified, so it can be kept or handed to other threads. */
+    public RosterColumns getPlayers() {
+        return writer.getPlayers();
+    }
+
+    /** The player with {@code playerId}, or null if there is none. */
+    public Player getPlayer(long playerId) {
+        RosterColumns players = writer.getPlayers();
+        int index = players.indexOfId(playerId);
+        return index >= 0 ? players.get(index) : null;
+    }
+
+    /** Sum of every player's amount, in cents. */
+    public long getTotalCents() {
+        return writer.getPlayers().totalCents();
+    }
+
+    /** Registers {@code listener} and, if anything has been read, hands it the current roster at once. */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        RosterColumns players = writer.getPlayers();
+        if (writer.isLoaded() || !players.isEmpty()) {
+            listener.onPlayersChanged(players);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Likely id for the next new player; see {@link RosterWriter#nextId}. Only meaningful once loaded. */
+    public long nextId() {
+        return writer.nextId();
+    }
+
+    /** Whether a player other than {@code excludeId} already uses {@code name}, ignoring case. */
+    public boolean isNameTaken(String name, long excludeId) {
+        return writer.isNameTaken(name, excludeId);
+    }
+
+    /** The id of the player called {@code name}, ignoring case, or 0 if there is none. */
+    public long findIdByName(String name) {
+        return writer.findIdByName(name);
+    }
+
+    /**
+     * Adds a player with the next free id. If another player took the name
+     * since it was checked, nothing is added and {@code onNameTaken} runs on
+     * the main thread.
+     */
+    public void add(String name, long amountCents, boolean member, Runnable onNameTaken) {
+        writer.add(name, amountCents, member, onNameTaken);
+    }
+
+    /**
+     * Writes back a changed player; {@code onUpdated} runs on the main thread
+     * once it is applied. If another player took the name since it was
+     * checked, nothing changes and {@code onNameTaken} runs instead.
+     */
+    public void update(Player player, Runnable onUpdated, Runnable onNameTaken) {
+        writer.update(player, onUpdated, onNameTaken);
+    }
+
+    /** Returns the id of the undo step for this delete, for {@link #undo(long)}. */
+    public long delete(long playerId) {
+        return writer.delete(playerId);
+    }
+
+    /** Returns the id of the undo step for this clear, for {@link #undo(long)}. */
+    public long clear() {
+        return writer.clear();
+    }
+
+    /**
+     * Adds a batch of players read from elsewhere, such as a CSV import, and
+     * saves them. Players whose names were taken meanwhile are left out.
+     * This can't be undone, and earlier changes can no longer be undone
+     * either. Blocks until they are in the roster; call off the main thread.
+     *
+     * @return how many players were added
+     */
+    public int addAll(List<Player> batch) throws InterruptedException {
+        return writer.addAll(batch);
+    }
+
+    public boolean canUndo() {
+        return writer.canUndo();
+    }
+
+    public boolean canRedo() {
+        return writer.canRedo();
+    }
+
+    /** Reverses the latest change. Only the difference is written to the store. */
+    public void undo() {
+        writer.undo();
+    }
+
+    /**
+     * Reverses the change that returned {@code stepId}, but only while it is
+     * still the latest; otherwise nothing happens, so an undo offered for one
+     * change never reverses another.
+     */
+    public void undo(long stepId) {
+        writer.undo(stepId);
+    }
+
+    public void redo() {
+        writer.redo();
+    }
+
+    /** Copies the {@link NameIndex#key} of every player, for duplicate checks off the main thread. */
+    public Set<String> copyNameKeys() {
+        return writer.copyNameKeys();
+    }
+
+    /**
+     * Replaces what the store holds with what {@code rewrite} writes, in one
+     * transaction after the changes asked for so far, then reads the roster
+     * again. Undo history is dropped. Call off the main thread.
+     */
+    public void replaceStored(Runnable rewrite) throws InterruptedException {
+        writer.replaceStored(rewrite);
+    }
+
+    /** Blocks until every change asked for so far has reached the store. Call off the main thread. */
+    public void awaitPendingWrites() throws InterruptedException {
+        writer.awaitIdle();
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.bmapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite-backed player roster.
+ *
+ * Names carry a NOCASE unique index, so a duplicate can never be stored;
+ * the app checks names against {@link RosterWriter}'s in-memory index before
+ * it gets here. Players are read in keyset pages ordered by id, so the first
+ * page can be shown before the rest is read. Amounts are stored as whole cents.
+ * Each player is flagged as a club member or not. Ids are never given out
+ * twice, so a new player can't pick up a deleted one's {@link SessionLedger} rows.
+ */
+public class PlayerStore extends SQLiteOpenHelper implements RosterWriter.Store {
+
+    private static final String TAG = "PlayerStore";
+
+    private static final String DB_NAME = "bmapp_players.db";
+    private static final int DB_VERSION = 5;
+
+    private static final String TABLE_PLAYERS = "players";
+    private static final String COL_ID = "id";
+    private static final String COL_NAME = "name";
+    private static final String COL_AMOUNT_CENTS = "amount_cents";
+    private static final String COL_IS_MEMBER = "is_member";
+
+    // One row while the legacy roster is still to be imported or deleted
+    private static final String TABLE_LEGACY_IMPORT = "legacy_import";
+    private static final String COL_STATE = "state";
+    private static final int LEGACY_PENDING = 0;
+    private static final int LEGACY_IMPORTED = 1;
+
+    private static PlayerStore instance;
+
+    private final Context appContext;
+
+    public static synchronized PlayerStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlayerStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PlayerStore(Context appContext) {
+        super(appContext, DB_NAME, null, DB_VERSION);
+        this.appContext = appContext;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        createPlayersTable(db);
+        SessionLedger.createTables(db);
+        // Imported on open, in a transaction of its own that can be retried
+        createLegacyImportTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            SessionLedger.createTables(db);
+        }
+        if (oldVersion < 3) {
+            // Everyone starts as a non-member until tagged
+            db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " ADD COLUMN "
+                    + COL_IS_MEMBER + " INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion < 4) {
+            // Legacy data is only left over from an import that stopped part way; the retry
+            // skips the players that import kept, as their names are taken
+            createLegacyImportTable(db);
+        }
+        if (oldVersion < 5) {
+            // Rebuilt with AUTOINCREMENT; the copied ids seed the highest id used so far
+            db.execSQL("DROP INDEX idx_players_name");
+            db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " RENAME TO players_old");
+            createPlayersTable(db);
+            db.execSQL("INSERT INTO " + TABLE_PLAYERS + " (" + COL_ID + ", " + COL_NAME + ", "
+                    + COL_AMOUNT_CENTS + ", " + COL_IS_MEMBER + ") SELECT " + COL_ID + ", " + COL_NAME + ", "
+                    + COL_AMOUNT_CENTS + ", " + COL_IS_MEMBER + " FROM players_old");
+            db.execSQL("DROP TABLE players_old");
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()) {
+            // Nothing can undo a deletion from an earlier run, so the dues of deleted players can go
+            SessionLedger.deletePlayersNotIn(db, "SELECT " + COL_ID + " FROM " + TABLE_PLAYERS);
+            importLegacyRoster(db);
+        }
+    }
+
+    // AUTOINCREMENT remembers the highest id ever stored, even once that player is deleted
+    private static void createPlayersTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_PLAYERS + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_NAME + " TEXT NOT NULL COLLATE NOCASE, "
+                + COL_AMOUNT_CENTS + " INTEGER NOT NULL, "
+                + COL_IS_MEMBER + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE UNIQUE INDEX idx_players_name ON "
+                + TABLE_PLAYERS + " (" + COL_NAME + " COLLATE NOCASE)");
+    }
+
+    private static void createLegacyImportTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LEGACY_IMPORT + " (" + COL_STATE + " INTEGER NOT NULL)");
+        ContentValues values = new ContentValues();
+        values.put(COL_STATE, LEGACY_PENDING);
+        db.insert(TABLE_LEGACY_IMPORT, null, values);
+    }
+
+    /**
+     * Imports the legacy roster, then deletes it. The import is one
+     * transaction. If the legacy data is damaged part way, the players read
+     * before the bad spot are kept and the raw data is set aside first, so it
+     * is never retried and nothing is lost. The legacy data is only deleted
+     * once the import has committed.
+     */
+    private void importLegacyRoster(SQLiteDatabase db) {
+        int state;
+        try (Cursor cursor = db.query(TABLE_LEGACY_IMPORT, new String[] {COL_STATE},
+                null, null, null, null, null)) {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            state = cursor.getInt(0);
+        }
+
+        LegacyRosterImporter importer = new LegacyRosterImporter(appContext);
+        if (state == LEGACY_PENDING) {
+            int[] imported = {0};
+            boolean committed = false;
+            db.beginTransaction();
+            try {
+                boolean complete = importer.importPlayers(player -> {
+                    if (insertLegacyPlayer(db, player)) {
+                        imported[0]++;
+                    }
+                });
+                if (complete || importer.setAsideLegacyData()) {
+                    ContentValues values = new ContentValues();
+                    values.put(COL_STATE, LEGACY_IMPORTED);
+                    db.update(TABLE_LEGACY_IMPORT, values, null, null);
+                    db.setTransactionSuccessful();
+                    committed = true;
+                }
+                if (!complete) {
+                    Log.w(TAG, "Legacy roster was damaged; kept what could be read");
+                }
+            } finally {
+                db.endTransaction();
+            }
+            // Only a failed copy of damaged data gets here; keep it rather than lose the players after the bad spot
+            if (!committed) {
+                Log.w(TAG, "Legacy roster import rolled back; retrying on next open");
+                return;
+            }
+            Log.i(TAG, "Imported " + imported[0] + " legacy players");
+        }
+
+        importer.deleteLegacyData();
+        db.delete(TABLE_LEGACY_IMPORT, null, null);
+    }
+
+    // Returns false if the name is already stored; a player whose id is taken gets the next free one
+    private static boolean insertLegacyPlayer(SQLiteDatabase db, Player player) {
+        if (isStored(db, COL_NAME, player.getName())) {
+            Log.w(TAG, "Skipped duplicate legacy player " + player.getName());
+            return false;
+        }
+        ContentValues values = toValues(player);
+        if (isStored(db, COL_ID, String.valueOf(player.getId()))) {
+            values.remove(COL_ID);
+        }
+        db.insertOrThrow(TABLE_PLAYERS, null, values);
+        return true;
+    }
+
+    private static boolean isStored(SQLiteDatabase db, String column, String value) {
+        try (Cursor cursor = db.query(TABLE_PLAYERS, new String[] {COL_ID}, column + " = ?",
+                new String[] {value}, null, null, null, "1")) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} players with an id greater than
+     * {@code afterId}, in id order. Pass 0 for the first page.
+     */
+    @Override
+    public List<Player> loadPage(long afterId, int limit) {
+        List<Player> page = new ArrayList<>(limit);
+        try (Cursor cursor = getReadableDatabase().query(TABLE_PLAYERS,
+                new String[] {COL_ID, COL_NAME, COL_AMOUNT_CENTS, COL_IS_MEMBER},
+                COL_ID + " > ?", new String[] {String.valueOf(afterId)},
+                null, null, COL_ID, String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                page.add(new Player(
+                        cursor.getLong(0),
+                        cursor.getString(1),
+                        cursor.getLong(2),
+                        cursor.getInt(3) != 0));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Starts a transaction that gives reads on this thread, including
+     * {@link SessionLedger} reads, one consistent view until {@link #endSnapshot}.
+     * From Android 15 it is read-only and writers carry on; before that
+     * writers wait until it ends, so keep it short.
+     */
+    public void beginSnapshot() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.VANILLA_ICE_CREAM) {
+            db.beginTransactionReadOnly();
+        } else {
+            db.beginTransactionNonExclusive();
+        }
+    }
+
+    public void endSnapshot() {
+        getWritableDatabase().endTransaction();
+    }
+
+    @Override
+    public long getMaxId() {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT seq FROM sqlite_sequence WHERE name = ?", new String[] {TABLE_PLAYERS})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    /** Runs {@code writes} in one transaction; if any write throws, none are kept. */
+    @Override
+    public void runInTransaction(Runnable writes) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            writes.run();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void insertPlayer(Player player) {
+        getWritableDatabase().insertOrThrow(TABLE_PLAYERS, null, toValues(player));
+    }
+
+    /** Inserts {@code players} in one transaction; if any insert fails, none are kept. */
+    @Override
+    public void insertPlayers(List<Player> players) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_PLAYERS
+                + " (" + COL_ID + ", " + COL_NAME + ", " + COL_AMOUNT_CENTS + ", " + COL_IS_MEMBER
+                + ") VALUES (?, ?, ?, ?)")) {
+            for (Player player : players) {
+                insert.bindLong(1, player.getId());
+                insert.bindString(2, player.getName());
+                insert.bindLong(3, player.getAmountCents());
+                insert.bindLong(4, player.isMember() ? 1 : 0);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void updatePlayer(Player player) {
+        getWritableDatabase().update(TABLE_PLAYERS, toValues(player),
+                COL_ID + " = ?", new String[] {String.valueOf(player.getId())});
+    }
+
+    @Override
+    public void deletePlayer(long playerId) {
+        getWritableDatabase().delete(TABLE_PLAYERS,
+                COL_ID + " = ?", new String[] {String.valueOf(playerId)});
+    }
+
+    @Override
+    public void clearPlayers() {
+        getWritableDatabase().delete(TABLE_PLAYERS, null, null);
+    }
+
+    private static ContentValues toValues(Player player) {
+        ContentValues values = new ContentValues();
+        values.put(COL_ID, player.getId());
+        values.put(COL_NAME, player.getName());
+        values.put(COL_AMOUNT_CENTS, player.getAmountCents());
+        values.put(COL_IS_MEMBER, player.isMember() ? 1 : 0);
+        return values;
+    }
+}
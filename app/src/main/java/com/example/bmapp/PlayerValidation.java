@@ -0,0 +1,34 @@
+package com.example.bmapp;
+
+/**
+ * Input rules shared by the player dialogs and the CSV import.
+ */
+final class PlayerValidation {
+
+    private PlayerValidation() {
+    }
+
+    /**
+     * Checks a name and amount as typed. Returns 0 if they are usable, or the
+     * string resource of the first problem. Duplicates are checked separately.
+     */
+    static int check(String name, String amountStr) {
+        if (name.isEmpty()) {
+            return R.string.error_empty_player_name;
+        }
+
+        if (amountStr.isEmpty()) {
+            return R.string.error_empty_player_amount;
+        }
+
+        long cents = Money.parseCents(amountStr);
+        if (cents == Money.INVALID) {
+            return R.string.error_invalid_amount;
+        }
+        if (cents < 0) {
+            return R.string.error_negative_amount;
+        }
+
+        return 0;
+    }
+}
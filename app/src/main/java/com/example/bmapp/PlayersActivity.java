@@ -1,39 +1,60 @@
 package com.example.bmapp;
 
-import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button;
-import android.widget.LinearLayout;
+import android.widget.CheckBox;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.android.material.button.MaterialButton;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.lang.ref.WeakReference;
-import java.lang.reflect.Type;
-import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.List;
-
-public class PlayersActivity extends AppCompatActivity {
-
-    private static final String PREFS_NAME = "BadmintonPlayersPrefs";
-    private static final String PLAYERS_KEY = "players_list";
-
-    private LinearLayout playersContainer;
-    private Button btnBack, btnAdd, btnClear;
-    private List<Player> playersList;
-    private DecimalFormat df;
-    private SharedPreferences sharedPreferences;
-    private Gson gson;
+import com.google.android.material.textfield.TextInputLayout;
+
+
+public class PlayersActivity extends AppCompatActivity
+        implements PlayerAdapter.OnPlayerActionListener, PlayerRepository.Listener {
+
+    private static final String[] CSV_MIME_TYPES = {"text/csv", "text/comma-separated-values", "text/plain"};
+    // Rows listed per section of the reconciliation; the rest are counted
+    private static final int RECONCILE_MAX_LINES = 30;
+
+    private RecyclerView playersRecyclerView;
+    private View emptyState;
+    private View progressLoading;
+    private TextView tvSummaryTotal, tvSummaryCount, tvSummaryBalance;
+    private Button btnBack, btnAdd, btnSplit, btnReconcile, btnImport, btnExport, btnRestore, btnClear, btnUndo, btnRedo, btnSort;
+    private TextInputEditText etSearch;
+    private RosterColumns playersList = RosterColumns.empty();
+    private PlayerAdapter playerAdapter;
+    private PlayerRepository repository;
+    private PlayersViewModel viewModel;
+    private AlertDialog exportDialog;
+    private ProgressBar exportProgressBar;
+    private TextView tvExportProgress;
+    // The open edit dialog's dues line and its player, until it closes
+    private TextView tvEditDues;
+    private long editDuesPlayerId;
+
+    private final ActivityResultLauncher<String[]> pickCsvLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importPlayersFromCsv);
+    private final ActivityResultLauncher<String> createCsvLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"), this::exportTo);
+    private final ActivityResultLauncher<String> createJsonLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"), this::exportTo);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,27 +62,73 @@ public class PlayersActivity extends AppCompatActivity {
         setContentView(R.layout.activity_players);
 
         // Initialize variables
-        playersList = new ArrayList<>();
-        df = new DecimalFormat("#0.00");
-        sharedPreferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        gson = new Gson();
+        playerAdapter = new PlayerAdapter(this);
+        repository = PlayerRepository.getInstance(this);
+        // Kept across rotations, along with any import or export it is running
+        viewModel = new ViewModelProvider(this).get(PlayersViewModel.class);
 
         // Initialize views
         initializeViews();
 
-        // Load saved players data
-        loadPlayersData();
-
         // Set click listeners
         setupClickListeners();
+
+        // Show the shared roster; it is only read from the store the first time
+        updateLoadingState();
+        repository.addListener(this);
+        repository.load();
+
+        observeViewModel();
+    }
+
+    private void observeViewModel() {
+        viewModel.isImporting().observe(this, importing -> updateLoadingState());
+        viewModel.getImportReport().observe(this, report -> {
+            if (report != null) {
+                viewModel.clearImportReport();
+                showImportReport(report);
+            }
+        });
+        viewModel.getExportProgress().observe(this, this::showExportProgress);
+        // Filtered and sorted off the UI thread; the adapter diffs each result against the last
+        viewModel.getVisiblePlayers().observe(this, playerAdapter::submitList);
+        viewModel.getSessionDues().observe(this, this::showSessionDues);
+        viewModel.getReconciliation().observe(this, result -> {
+            if (result != null) {
+                viewModel.clearReconciliation();
+                showReconciliation(result);
+            }
+        });
+        viewModel.getMessage().observe(this, messageRes -> {
+            if (messageRes != null) {
+                viewModel.clearMessage();
+                showMessage(getString(messageRes));
+            }
+        });
     }
 
     private void initializeViews() {
-        playersContainer = findViewById(R.id.players_table_container);
+        playersRecyclerView = findViewById(R.id.players_recycler_view);
+        emptyState = findViewById(R.id.empty_state);
+        progressLoading = findViewById(R.id.progress_loading_players);
         btnBack = findViewById(R.id.btn_back);
         btnAdd = findViewById(R.id.btn_add);
+        btnSplit = findViewById(R.id.btn_split);
+        btnReconcile = findViewById(R.id.btn_reconcile);
+        btnImport = findViewById(R.id.btn_import);
+        btnExport = findViewById(R.id.btn_export);
+        btnRestore = findViewById(R.id.btn_restore);
         btnClear = findViewById(R.id.btn_clear);
-        // tvEmptyState = findViewById(R.id.tv_empty_state); // Remove this for now since layout changed
+        btnUndo = findViewById(R.id.btn_undo);
+        btnRedo = findViewById(R.id.btn_redo);
+        btnSort = findViewById(R.id.btn_sort);
+        etSearch = findViewById(R.id.et_search);
+        tvSummaryTotal = findViewById(R.id.tv_summary_total);
+        tvSummaryCount = findViewById(R.id.tv_summary_count);
+        tvSummaryBalance = findViewById(R.id.tv_summary_balance);
+
+        playersRecyclerView.setHasFixedSize(true);
+        playersRecyclerView.setAdapter(playerAdapter);
     }
 
     private void setupClickListeners() {
@@ -69,39 +136,146 @@ public class PlayersActivity extends AppCompatActivity {
 
         btnAdd.setOnClickListener(v -> showAddPlayerDialog());
 
+        btnSplit.setOnClickListener(v -> showSplitDialog());
+
+        btnReconcile.setOnClickListener(v -> viewModel.reconcile());
+
+        btnImport.setOnClickListener(v -> pickCsvLauncher.launch(CSV_MIME_TYPES));
+
+        btnExport.setOnClickListener(v -> showExportDialog());
+
+        btnRestore.setOnClickListener(v -> showRestoreConfirmDialog());
+
         btnClear.setOnClickListener(v -> showClearConfirmDialog());
+
+        btnUndo.setOnClickListener(v -> repository.undo());
+
+        btnRedo.setOnClickListener(v -> repository.redo());
+
+        btnSort.setOnClickListener(v -> showSortDialog());
+
+        // Filter as the user types
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                viewModel.setQuery(s.toString());
+            }
+        });
     }
 
-    private void savePlayersData() {
-        String json = gson.toJson(playersList);
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(PLAYERS_KEY, json);
-        editor.apply();
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // The fees may have been changed on the main screen
+        updateSummary();
     }
 
-    private void loadPlayersData() {
-        String json = sharedPreferences.getString(PLAYERS_KEY, null);
-        if (json != null) {
-            Type type = new TypeToken<List<Player>>(){}.getType();
-            List<Player> savedPlayers = gson.fromJson(json, type);
-            if (savedPlayers != null) {
-                playersList.clear();
-                playersList.addAll(savedPlayers);
+    @Override
+    protected void onPause() {
+        super.onPause();
+        AppSettings.getInstance(this).flush();
+    }
 
-                // Display loaded players
-                for (Player player : playersList) {
-                    addPlayerView(player);
-                }
-            }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        repository.removeListener(this);
+        if (exportDialog != null) {
+            exportDialog.dismiss();
         }
     }
 
+    @Override
+    public void onPlayersChanged(RosterColumns players) {
+        // Snapshots are never modified, so they can be filtered on another thread without a copy
+        playersList = players;
+        viewModel.setRoster(players);
+        updateLoadingState();
+        updateSummary();
+    }
+
+    @Override
+    public void onChangeLost() {
+        showError(getString(R.string.error_roster_save_failed));
+    }
+
+    private void updateSummary() {
+        if (!repository.isLoaded()) {
+            return;
+        }
+        // The repository keeps the sum as players change, so this never walks the roster
+        long totalCents = repository.getTotalCents();
+        tvSummaryTotal.setText(Money.format(totalCents));
+        tvSummaryCount.setText(String.valueOf(playersList.size()));
+
+        AppSettings settings = AppSettings.getInstance(this);
+        long courtFeeCents = parseFee(settings.getCourtFeeText());
+        long shuttleFeeCents = parseFee(settings.getShuttleFeeText());
+        if (courtFeeCents < 0 && shuttleFeeCents < 0) {
+            tvSummaryBalance.setText(getString(R.string.summary_no_fees));
+            tvSummaryBalance.setTextColor(ContextCompat.getColor(this, R.color.summary_balance_neutral));
+            return;
+        }
+        long balanceCents = totalCents - Math.max(courtFeeCents, 0) - Math.max(shuttleFeeCents, 0);
+        StringBuilder balance = new StringBuilder(Money.MAX_CHARS + 1);
+        if (balanceCents > 0) {
+            balance.append('+');
+        }
+        tvSummaryBalance.setText(Money.append(balance, balanceCents));
+        tvSummaryBalance.setTextColor(ContextCompat.getColor(this,
+                balanceCents < 0 ? R.color.summary_balance_short : R.color.summary_balance_covered));
+    }
+
+    // A fee as typed on the main screen, in cents; -1 if empty or not a valid amount
+    private static long parseFee(String text) {
+        long cents = Money.parseCents(text);
+        return cents == Money.INVALID || cents < 0 ? -1 : cents;
+    }
+
+    private void updateLoadingState() {
+        // Adding needs the next free id and the full name index, so wait until the whole roster is in
+        boolean ready = repository.isLoaded() && !Boolean.TRUE.equals(viewModel.isImporting().getValue());
+        btnAdd.setEnabled(ready);
+        btnSplit.setEnabled(ready);
+        btnReconcile.setEnabled(ready);
+        btnImport.setEnabled(ready);
+        btnRestore.setEnabled(ready);
+        btnClear.setEnabled(ready);
+        // Every undoable change publishes a new roster, so this stays current
+        btnUndo.setEnabled(ready && repository.canUndo());
+        btnRedo.setEnabled(ready && repository.canRedo());
+        progressLoading.setVisibility(ready ? View.GONE : View.VISIBLE);
+        if (!repository.isLoaded()) {
+            emptyState.setVisibility(View.GONE);
+            return;
+        }
+        playersRecyclerView.setVisibility(playersList.isEmpty() ? View.GONE : View.VISIBLE);
+        emptyState.setVisibility(playersList.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public void onPlayerClicked(Player player) {
+        showEditPlayerDialog(player);
+    }
+
+    @Override
+    public void onPlayerDeleteClicked(Player player) {
+        showDeleteConfirmDialog(player);
+    }
+
     private void showAddPlayerDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_add_player, null);
 
         TextInputEditText etPlayerName = dialogView.findViewById(R.id.et_player_name);
         TextInputEditText etPlayerAmount = dialogView.findViewById(R.id.et_player_amount);
+        CheckBox cbMember = dialogView.findViewById(R.id.cb_player_member);
 
         builder.setView(dialogView)
                 .setTitle(getString(R.string.dialog_add_player_title))
@@ -110,27 +284,33 @@ public class PlayersActivity extends AppCompatActivity {
                     String amountStr = etPlayerAmount.getText() != null ? etPlayerAmount.getText().toString().trim() : "";
 
                     if (validatePlayerInput(name, amountStr)) {
-                        double amount = Double.parseDouble(amountStr);
-                        Player player = new Player(name, amount);
-                        playersList.add(player);
-                        addPlayerView(player);
-                        savePlayersData();
+                        // Another change may take the name before the add runs
+                        repository.add(name, Money.parseCents(amountStr), cbMember.isChecked(), () -> {
+                            if (!isDestroyed()) {
+                                showError(getString(R.string.error_duplicate_player));
+                            }
+                        });
                     }
                 })
                 .setNegativeButton(getString(R.string.btn_cancel), null)
                 .show();
     }
 
-    private void showEditPlayerDialog(Player player, View playerView) {
+    private void showEditPlayerDialog(Player player) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_edit_player, null);
 
         TextInputEditText etPlayerName = dialogView.findViewById(R.id.et_edit_player_name);
         TextInputEditText etPlayerAmount = dialogView.findViewById(R.id.et_edit_player_amount);
+        CheckBox cbMember = dialogView.findViewById(R.id.cb_edit_player_member);
+        tvEditDues = dialogView.findViewById(R.id.tv_edit_player_dues);
+        editDuesPlayerId = player.getId();
+        viewModel.loadSessionDues(player.getId());
 
         // Pre-fill with current values
         etPlayerName.setText(player.getName());
-        etPlayerAmount.setText(String.valueOf(player.getAmount()));
+        etPlayerAmount.setText(Money.toPlainText(player.getAmountCents()));
+        cbMember.setChecked(player.isMember());
 
         builder.setView(dialogView)
                 .setTitle(getString(R.string.dialog_edit_player_title))
@@ -139,148 +319,297 @@ public class PlayersActivity extends AppCompatActivity {
                     String amountStr = etPlayerAmount.getText() != null ? etPlayerAmount.getText().toString().trim() : "";
 
                     if (validatePlayerEditInput(name, amountStr, player)) {
-                        double amount = Double.parseDouble(amountStr);
-
-                        // Update player data
-                        player.setName(name);
-                        player.setAmount(amount);
-
-                        // Update the view
-                        updatePlayerView(playerView, player);
-
-                        // Save the updated data
-                        savePlayersData();
-
-                        showMessage(getString(R.string.player_updated, name));
+                        long amountCents = Money.parseCents(amountStr);
+
+                        // Only the changed row is written back; another change may take the name first
+                        repository.update(new Player(player.getId(), name, amountCents, cbMember.isChecked()), () -> {
+                            if (!isDestroyed()) {
+                                showMessage(getString(R.string.player_updated, name));
+                            }
+                        }, () -> {
+                            if (!isDestroyed()) {
+                                showError(getString(R.string.error_duplicate_player));
+                            }
+                        });
                     }
                 })
                 .setNegativeButton(getString(R.string.btn_cancel), null)
+                .setOnDismissListener(dialog -> tvEditDues = null)
                 .show();
     }
 
+    private void showSessionDues(long[] dues) {
+        // Dues of a player whose dialog has closed since are dropped
+        if (dues == null || tvEditDues == null || dues[0] != editDuesPlayerId || dues[2] == 0) {
+            return;
+        }
+        tvEditDues.setText(getString(R.string.player_session_dues, Money.format(dues[1]), (int) dues[2]));
+        tvEditDues.setVisibility(View.VISIBLE);
+    }
+
     private boolean validatePlayerEditInput(String name, String amountStr, Player currentPlayer) {
-        if (name.isEmpty()) {
-            showError(getString(R.string.error_empty_player_name));
+        int error = PlayerValidation.check(name, amountStr);
+        if (error != 0) {
+            showError(getString(error));
             return false;
         }
 
-        if (amountStr.isEmpty()) {
-            showError(getString(R.string.error_empty_player_amount));
+        // Check for duplicate names (excluding current player) through the name index
+        if (repository.isNameTaken(name, currentPlayer.getId())) {
+            showError(getString(R.string.error_duplicate_player));
             return false;
         }
 
-        try {
-            double amount = Double.parseDouble(amountStr);
-            if (amount < 0) {
-                showError(getString(R.string.error_negative_amount));
-                return false;
-            }
-        } catch (NumberFormatException e) {
-            showError(getString(R.string.error_invalid_amount));
+        return true;
+    }
+
+    private boolean validatePlayerInput(String name, String amountStr) {
+        int error = PlayerValidation.check(name, amountStr);
+        if (error != 0) {
+            showError(getString(error));
             return false;
         }
 
-        // Check for duplicate names (excluding current player)
-        for (Player player : playersList) {
-            if (player != currentPlayer && player.getName().equalsIgnoreCase(name)) {
-                showError(getString(R.string.error_duplicate_player));
-                return false;
-            }
+        // Check for duplicate names through the name index
+        if (repository.isNameTaken(name, 0)) {
+            showError(getString(R.string.error_duplicate_player));
+            return false;
         }
 
         return true;
     }
 
-    private void updatePlayerView(View playerView, Player player) {
-        TextView tvPlayerName = playerView.findViewById(R.id.tv_player_name);
-        TextView tvPlayerAmount = playerView.findViewById(R.id.tv_player_amount);
+    private void showSortDialog() {
+        String[] options = {
+                getString(R.string.sort_name_ascending),
+                getString(R.string.sort_name_descending),
+                getString(R.string.sort_amount_ascending),
+                getString(R.string.sort_amount_descending)
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.sort_title))
+                .setSingleChoiceItems(options, viewModel.getSort().ordinal(), (dialog, which) -> {
+                    viewModel.setSort(RosterIndex.Sort.values()[which]);
+                    dialog.dismiss();
+                })
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+    }
+
+    private void showSplitDialog() {
+        View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_split_session, null);
+        TextInputLayout tilCourts = dialogView.findViewById(R.id.til_split_courts);
+        TextInputLayout tilAttendance = dialogView.findViewById(R.id.til_split_attendance);
+        TextInputEditText etCourts = dialogView.findViewById(R.id.et_split_courts);
+        TextInputEditText etAttendance = dialogView.findViewById(R.id.et_split_attendance);
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.split_title))
+                .setView(dialogView)
+                .setPositiveButton(getString(R.string.btn_split_calculate), null)
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+
+        // Set after show() so a typing mistake keeps the dialog and what was typed
+        dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String courts = etCourts.getText() != null ? etCourts.getText().toString() : "";
+            String attendance = etAttendance.getText() != null ? etAttendance.getText().toString() : "";
+            SessionSplitInput input = SessionSplitInput.parse(courts, attendance, repository::findIdByName);
+
+            tilCourts.setError(null);
+            tilAttendance.setError(null);
+            if (!input.errors.isEmpty()) {
+                // Show the first mistake in each box
+                for (int i = input.errors.size() - 1; i >= 0; i--) {
+                    SessionSplitInput.LineError error = input.errors.get(i);
+                    String message = error.lineNumber > 0
+                            ? getString(R.string.split_line_error, error.lineNumber, getString(error.messageRes))
+                            : getString(error.messageRes);
+                    (error.attendance ? tilAttendance : tilCourts).setError(message);
+                }
+                return;
+            }
 
-        if (tvPlayerName != null && tvPlayerAmount != null) {
-            tvPlayerName.setText(player.getName());
-            tvPlayerAmount.setText(getString(R.string.amount_format, df.format(player.getAmount())));
-        }
+            dialog.dismiss();
+            showSplitResult(input, SessionSplitter.split(input.slots, input.attendances));
+        });
     }
 
-    private boolean validatePlayerInput(String name, String amountStr) {
-        if (name.isEmpty()) {
-            showError(getString(R.string.error_empty_player_name));
-            return false;
+    private void showSplitResult(SessionSplitInput input, SessionSplitter.Result split) {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < split.playerIds.length; i++) {
+            Player player = repository.getPlayer(split.playerIds[i]);
+            String name = player != null ? player.getName() : String.valueOf(split.playerIds[i]);
+            message.append(getString(R.string.split_share_line, name, Money.format(split.shareCents[i]))).append("\n");
         }
-
-        if (amountStr.isEmpty()) {
-            showError(getString(R.string.error_empty_player_amount));
-            return false;
+        message.append("\n").append(getString(R.string.split_total, Money.format(split.totalCents)));
+        if (split.unattendedCents > 0) {
+            message.append("\n").append(getString(R.string.split_unattended, Money.format(split.unattendedCents)));
         }
 
-        try {
-            double amount = Double.parseDouble(amountStr);
-            if (amount < 0) {
-                showError(getString(R.string.error_negative_amount));
-                return false;
-            }
-        } catch (NumberFormatException e) {
-            showError(getString(R.string.error_invalid_amount));
-            return false;
-        }
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.split_title))
+                .setMessage(message.toString())
+                // Shares are dues, kept in the session ledger; the amounts stay what players paid
+                .setPositiveButton(getString(R.string.btn_save_session),
+                        (dialog, which) -> viewModel.recordSplit(input, split))
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+    }
 
-        // Check for duplicate names
-        for (Player player : playersList) {
-            if (player.getName().equalsIgnoreCase(name)) {
-                showError(getString(R.string.error_duplicate_player));
-                return false;
-            }
+    private void showReconciliation(Reconciliation.Result result) {
+        RosterColumns players = result.players;
+        StringBuilder message = new StringBuilder();
+        message.append(getString(R.string.reconcile_counts, result.members, result.nonMembers)).append("\n");
+        message.append(getString(R.string.reconcile_totals, Money.format(result.dueCents),
+                Money.format(result.paidCents))).append("\n");
+
+        message.append("\n").append(getString(R.string.reconcile_underpaid, result.underpaid.length));
+        int lines = Math.min(result.underpaid.length, RECONCILE_MAX_LINES);
+        for (int i = 0; i < lines; i++) {
+            int row = result.underpaid[i];
+            message.append("\n").append(getString(R.string.split_share_line, players.nameAt(row),
+                    Money.format(-result.balanceCents[row])));
+        }
+        appendMore(message, result.underpaid.length - lines);
+
+        message.append("\n\n").append(getString(R.string.reconcile_overpaid, result.overpaid.length));
+        lines = Math.min(result.overpaid.length, RECONCILE_MAX_LINES);
+        for (int i = 0; i < lines; i++) {
+            int row = result.overpaid[i];
+            message.append("\n").append(getString(R.string.split_share_line, players.nameAt(row),
+                    Money.format(result.balanceCents[row])));
         }
+        appendMore(message, result.overpaid.length - lines);
+
+        message.append("\n\n").append(getString(R.string.reconcile_transfers, result.transferCount()));
+        lines = Math.min(result.transferCount(), RECONCILE_MAX_LINES);
+        for (int i = 0; i < lines; i++) {
+            message.append("\n").append(getString(R.string.reconcile_transfer_line,
+                    partyName(players, result.fromIds[i]), partyName(players, result.toIds[i]),
+                    Money.format(result.transferCents[i])));
+        }
+        appendMore(message, result.transferCount() - lines);
 
-        return true;
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.reconcile_title))
+                .setMessage(message.toString())
+                .setPositiveButton(getString(android.R.string.ok), null)
+                .show();
     }
 
-    private void addPlayerView(Player player) {
-        View playerView = LayoutInflater.from(this).inflate(R.layout.item_player_row, playersContainer, false);
+    private String partyName(RosterColumns players, long id) {
+        if (id == Reconciliation.CLUB) {
+            return getString(R.string.reconcile_club);
+        }
+        int row = players.indexOfId(id);
+        return row >= 0 ? players.nameAt(row) : String.valueOf(id);
+    }
 
-        TextView tvPlayerName = playerView.findViewById(R.id.tv_player_name);
-        TextView tvPlayerAmount = playerView.findViewById(R.id.tv_player_amount);
-        MaterialButton btnDelete = playerView.findViewById(R.id.btn_delete_player);
+    private void appendMore(StringBuilder message, int more) {
+        if (more > 0) {
+            message.append("\n").append(getString(R.string.reconcile_more, more));
+        }
+    }
 
-        // Add null checks
-        if (tvPlayerName == null || tvPlayerAmount == null || btnDelete == null) {
-            showError("Error loading player view");
+    private void importPlayersFromCsv(Uri uri) {
+        if (uri != null && repository.isLoaded()) {
+            viewModel.importCsv(uri);
+        }
+    }
+
+    private void showImportReport(PlayerCsvImporter.Report report) {
+        String summary = getString(R.string.csv_import_summary, report.imported, report.rejected);
+        if (report.rejected == 0) {
+            showMessage(summary);
             return;
         }
 
-        tvPlayerName.setText(player.getName());
-        tvPlayerAmount.setText(getString(R.string.amount_format, df.format(player.getAmount())));
+        StringBuilder message = new StringBuilder(summary).append("\n");
+        for (PlayerCsvImporter.RowError error : report.errors) {
+            message.append("\n").append(getString(R.string.csv_row_error, error.lineNumber, getString(error.messageRes)));
+        }
+        if (report.rejected > report.errors.size()) {
+            message.append("\n").append(getString(R.string.csv_more_errors, report.rejected - report.errors.size()));
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.csv_import_title))
+                .setMessage(message.toString())
+                .setPositiveButton(getString(android.R.string.ok), null)
+                .show();
+    }
 
-        // Use WeakReference to prevent memory leaks
-        WeakReference<View> playerViewRef = new WeakReference<>(playerView);
+    private void showExportDialog() {
+        String[] options = {
+                getString(R.string.export_players_csv),
+                getString(R.string.export_sessions_csv),
+                getString(R.string.export_all_json)
+        };
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.export_title))
+                .setItems(options, (dialog, which) -> {
+                    RosterExporter.Kind kind = RosterExporter.Kind.values()[which];
+                    // Remembered across the picker, even if the process is killed meanwhile
+                    viewModel.setPendingExportKind(kind);
+                    switch (kind) {
+                        case PLAYERS_CSV:
+                            createCsvLauncher.launch("bmapp-players.csv");
+                            break;
+                        case SESSIONS_CSV:
+                            createCsvLauncher.launch("bmapp-sessions.csv");
+                            break;
+                        default:
+                            createJsonLauncher.launch("bmapp-export.json");
+                            break;
+                    }
+                })
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+    }
 
-        // Make the entire row clickable for editing
-        playerView.setOnClickListener(v -> {
-            View view = playerViewRef.get();
-            if (view != null) {
-                showEditPlayerDialog(player, view);
-            }
-        });
+    private void exportTo(Uri uri) {
+        viewModel.export(uri);
+    }
 
-        // Delete button functionality
-        btnDelete.setOnClickListener(v -> {
-            View view = playerViewRef.get();
-            if (view != null) {
-                showDeleteConfirmDialog(player, view);
+    private void showExportProgress(long[] progress) {
+        btnExport.setEnabled(progress == null);
+        if (progress == null) {
+            if (exportDialog != null) {
+                exportDialog.dismiss();
+                exportDialog = null;
             }
-        });
-
-        playersContainer.addView(playerView);
+            return;
+        }
+        if (exportDialog == null) {
+            // Also reopened for an export still running after a rotation
+            View dialogView = LayoutInflater.from(this).inflate(R.layout.dialog_export_progress, null);
+            exportProgressBar = dialogView.findViewById(R.id.progress_export);
+            tvExportProgress = dialogView.findViewById(R.id.tv_export_progress);
+            exportDialog = new AlertDialog.Builder(this)
+                    .setTitle(getString(R.string.export_title))
+                    .setView(dialogView)
+                    .setCancelable(false)
+                    .setNegativeButton(getString(R.string.btn_cancel), (dialog, which) -> viewModel.cancelExport())
+                    .show();
+        }
+        long done = progress[0];
+        long total = progress[1];
+        if (total <= 0) {
+            return;
+        }
+        exportProgressBar.setIndeterminate(false);
+        exportProgressBar.setMax(1000);
+        exportProgressBar.setProgress((int) (done * 1000 / total));
+        tvExportProgress.setText(getString(R.string.export_progress, done, total));
     }
 
-    private void showDeleteConfirmDialog(Player player, View playerView) {
+    private void showDeleteConfirmDialog(Player player) {
         new AlertDialog.Builder(this)
                 .setTitle(getString(R.string.confirm_delete_title))
                 .setMessage(getString(R.string.confirm_delete_message, player.getName()))
                 .setPositiveButton(getString(R.string.btn_delete), (dialog, which) -> {
-                    playersList.remove(player);
-                    playersContainer.removeView(playerView);
-                    savePlayersData();
-                    showMessage(getString(R.string.player_deleted, player.getName()));
+                    long step = repository.delete(player.getId());
+                    showUndoSnackbar(getString(R.string.player_deleted, player.getName()), step);
                 })
                 .setNegativeButton(getString(R.string.btn_cancel), null)
                 .show();
@@ -296,15 +625,29 @@ public class PlayersActivity extends AppCompatActivity {
                 .setTitle(getString(R.string.confirm_clear_title))
                 .setMessage(getString(R.string.confirm_clear_message))
                 .setPositiveButton(getString(R.string.btn_clear), (dialog, which) -> {
-                    playersList.clear();
-                    playersContainer.removeAllViews();
-                    savePlayersData();
-                    showMessage(getString(R.string.all_players_cleared));
+                    long step = repository.clear();
+                    showUndoSnackbar(getString(R.string.all_players_cleared), step);
                 })
                 .setNegativeButton(getString(R.string.btn_cancel), null)
                 .show();
     }
 
+    private void showRestoreConfirmDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle(getString(R.string.confirm_restore_title))
+                .setMessage(getString(R.string.confirm_restore_message))
+                .setPositiveButton(getString(R.string.btn_restore_confirm), (dialog, which) -> viewModel.restoreBackup())
+                .setNegativeButton(getString(R.string.btn_cancel), null)
+                .show();
+    }
+
+    // Undoes only the change with the given step, in case another came since
+    private void showUndoSnackbar(String message, long step) {
+        Snackbar.make(playersRecyclerView, message, Snackbar.LENGTH_LONG)
+                .setAction(getString(R.string.btn_undo), v -> repository.undo(step))
+                .show();
+    }
+
     private void showError(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
@@ -312,33 +655,4 @@ public class PlayersActivity extends AppCompatActivity {
     private void showMessage(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
-
-
-
-    // Player model class
-    public static class Player {
-        private String name;
-        private double amount;
-
-        public Player(String name, double amount) {
-            this.name = name;
-            this.amount = amount;
-        }
-
-        public String getName() {
-            return name;
-        }
-
-        public void setName(String name) {
-            this.name = name;
-        }
-
-        public double getAmount() {
-            return amount;
-        }
-
-        public void setAmount(double amount) {
-            this.amount = amount;
-        }
-    }
 }
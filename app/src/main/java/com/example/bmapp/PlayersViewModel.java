@@ -0,0 +1,449 @@
+package com.example.bmapp;
+
+import android.app.Application;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.Collator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of the players screen that has to outlive a rotation.
+ *
+ * The roster itself lives in {@link PlayerRepository}, so a recreated screen
+ * only re-attaches to it. What is kept here is the work the screen started:
+ * a running CSV import, export or backup restore carries on across a
+ * rotation and reports to whichever screen is showing when it ends. The
+ * export type picked before the document picker opens is kept in the
+ * {@link SavedStateHandle}, so it also survives the process being killed
+ * while the picker is up.
+ *
+ * The filter and sort order are kept here too. Each change to them or to the
+ * roster filters again on a background thread through a {@link RosterIndex};
+ * a newer query cancels one still running, so typing quickly never queues up
+ * stale results.
+ *
+ * Reconciling payments against the fees also runs on its own thread, from
+ * the roster snapshot of the moment, and its result is kept until shown.
+ */
+public class PlayersViewModel extends AndroidViewModel {
+
+    private static final String TAG = "PlayersViewModel";
+    private static final String KEY_PENDING_EXPORT = "pending_export_kind";
+    private static final String KEY_QUERY = "query";
+    private static final String KEY_SORT = "sort";
+
+    private final SavedStateHandle savedState;
+    private final PlayerStore playerStore;
+    private final PlayerRepository repository;
+
+    // CSV imports and backup restores read their file off the UI thread; split nights are recorded here too
+    private final ExecutorService importExecutor = Executors.newSingleThreadExecutor();
+    // Exports run on their own thread from a snapshot, so edits carry on meanwhile
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean exportCancelled = new AtomicBoolean();
+    // Filtering runs here, one query at a time, along with short ledger reads
+    private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor();
+    // Reconciliations run here, so a long roster never holds up filtering
+    private final ExecutorService reconcileExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean reconcileCancelled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final MutableLiveData<Boolean> importing = new MutableLiveData<>(false);
+    private final MutableLiveData<PlayerCsvImporter.Report> importReport = new MutableLiveData<>();
+    // {done, total} while an export runs, null otherwise
+    private final MutableLiveData<long[]> exportProgress = new MutableLiveData<>();
+    private final MutableLiveData<Integer> message = new MutableLiveData<>();
+    private final MutableLiveData<List<Player>> visiblePlayers = new MutableLiveData<>();
+    private final MutableLiveData<Reconciliation.Result> reconciliation = new MutableLiveData<>();
+    // {player id, owed cents, sessions} from the session ledger
+    private final MutableLiveData<long[]> sessionDues = new MutableLiveData<>();
+    private boolean reconciling;
+
+    // Filter thread only
+    private final Collator collator = RosterIndex.newCollator();
+    private RosterIndex rosterIndex;
+
+    // Main thread only
+    private RosterColumns roster = RosterColumns.empty();
+    private AtomicBoolean filterCancelled = new AtomicBoolean();
+
+    public PlayersViewModel(Application application, SavedStateHandle savedState) {
+        super(application);
+        this.savedState = savedState;
+        this.playerStore = PlayerStore.getInstance(application);
+        this.repository = PlayerRepository.getInstance(application);
+    }
+
+    public LiveData<Boolean> isImporting() {
+        return importing;
+    }
+
+    /** The report of a finished import, until {@link #clearImportReport} is called. */
+    public LiveData<PlayerCsvImporter.Report> getImportReport() {
+        return importReport;
+    }
+
+    public void clearImportReport() {
+        importReport.setValue(null);
+    }
+
+    public LiveData<long[]> getExportProgress() {
+        return exportProgress;
+    }
+
+    /** A string resource to show once, until {@link #clearMessage} is called. */
+    public LiveData<Integer> getMessage() {
+        return message;
+    }
+
+    public void clearMessage() {
+        message.setValue(null);
+    }
+
+    /** The roster as filtered and sorted for display. */
+    public LiveData<List<Player>> getVisiblePlayers() {
+        return visiblePlayers;
+    }
+
+    /** The result of a finished reconciliation, until {@link #clearReconciliation} is called. */
+    public LiveData<Reconciliation.Result> getReconciliation() {
+        return reconciliation;
+    }
+
+    public void clearReconciliation() {
+        reconciliation.setValue(null);
+    }
+
+    /** A player's dues from recorded sessions, as {player id, owed cents, sessions}, once loaded. */
+    public LiveData<long[]> getSessionDues() {
+        return sessionDues;
+    }
+
+    /** Reads what {@code playerId} owes for recorded sessions; see {@link #getSessionDues}. */
+    public void loadSessionDues(long playerId) {
+        sessionDues.setValue(null);
+        Context appContext = getApplication();
+        filterExecutor.execute(() -> {
+            try {
+                long[] balance = SessionLedger.getInstance(appContext).getBalance(playerId);
+                sessionDues.postValue(new long[] {playerId, balance[0], balance[1]});
+            } catch (RuntimeException e) {
+                // The dialog works without it
+                Log.w(TAG, "Could not read session dues", e);
+            }
+        });
+    }
+
+    public String getQuery() {
+        String query = savedState.get(KEY_QUERY);
+        return query != null ? query : "";
+    }
+
+    public RosterIndex.Sort getSort() {
+        String sort = savedState.get(KEY_SORT);
+        return sort != null ? RosterIndex.Sort.valueOf(sort) : RosterIndex.Sort.NAME_ASCENDING;
+    }
+
+    /** Called with each new roster snapshot. */
+    public void setRoster(RosterColumns players) {
+        roster = players;
+        filter();
+    }
+
+    public void setQuery(String query) {
+        if (!query.equals(getQuery())) {
+            savedState.set(KEY_QUERY, query);
+            filter();
+        }
+    }
+
+    public void setSort(RosterIndex.Sort sort) {
+        if (sort != getSort()) {
+            savedState.set(KEY_SORT, sort.name());
+            filter();
+        }
+    }
+
+    public void setPendingExportKind(RosterExporter.Kind kind) {
+        savedState.set(KEY_PENDING_EXPORT, kind.name());
+    }
+
+    /** Imports a CSV picked by the user. Call once the roster has loaded. */
+    public void importCsv(Uri uri) {
+        if (Boolean.TRUE.equals(importing.getValue())) {
+            return;
+        }
+        importing.setValue(true);
+
+        // Duplicates are checked against a hash set instead of scanning the roster per row
+        Set<String> takenNames = repository.copyNameKeys();
+        long firstId = repository.nextId();
+        Context appContext = getApplication();
+        importExecutor.execute(() -> {
+            PlayerCsvImporter.Report report = null;
+            try (InputStream in = appContext.getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                // Batches queue up behind earlier edits on the roster's writer, which saves them in order
+                PlayerCsvImporter importer = new PlayerCsvImporter(takenNames, firstId, repository::addAll);
+                Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                report = importer.importFrom(reader);
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                // Batches handed over before the failure stay imported
+                Log.e(TAG, "CSV import failed", e);
+            }
+
+            PlayerCsvImporter.Report result = report;
+            mainHandler.post(() -> {
+                importing.setValue(false);
+                if (result == null) {
+                    message.setValue(R.string.error_csv_import_failed);
+                } else {
+                    importReport.setValue(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Replaces the roster and recorded sessions with the latest intact local
+     * backup. Reported through {@link #isImporting} and {@link #getMessage}.
+     */
+    public void restoreBackup() {
+        if (Boolean.TRUE.equals(importing.getValue())) {
+            return;
+        }
+        importing.setValue(true);
+
+        Context appContext = getApplication();
+        importExecutor.execute(() -> {
+            int messageRes;
+            try {
+                File dir = BackupWorker.backupDir(appContext);
+                SessionLedger ledger = SessionLedger.getInstance(appContext);
+                synchronized (RosterBackup.LOCK) {
+                    RosterBackup.Contents contents = RosterBackup.restoreLatest(dir);
+                    if (contents == null) {
+                        messageRes = R.string.restore_no_backup;
+                    } else {
+                        // Players and sessions are replaced in one transaction, so a failure keeps both as they were
+                        repository.replaceStored(() -> {
+                            playerStore.clearPlayers();
+                            playerStore.insertPlayers(contents.players);
+                            ledger.replaceAll(contents.sessions);
+                        });
+                        RosterBackup.startNewChain(dir);
+                        messageRes = R.string.restore_done;
+                    }
+                }
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                Log.e(TAG, "Restore failed", e);
+                messageRes = R.string.error_restore_failed;
+            }
+
+            int resultMessage = messageRes;
+            mainHandler.post(() -> {
+                importing.setValue(false);
+                message.setValue(resultMessage);
+            });
+        });
+    }
+
+    /**
+     * Checks the roster's payments against the fees saved on the main screen.
+     * Reported through {@link #getReconciliation}, or {@link #getMessage} if
+     * there is nothing to check against.
+     */
+    public void reconcile() {
+        if (reconciling) {
+            return;
+        }
+        RosterColumns players = roster;
+        AppSettings settings = AppSettings.getInstance(getApplication());
+        long courtFeeCents = Money.parseCents(settings.getCourtFeeText());
+        long shuttleFeeCents = Money.parseCents(settings.getShuttleFeeText());
+        if (players.isEmpty()) {
+            message.setValue(R.string.reconcile_no_players);
+            return;
+        }
+        if (courtFeeCents == Money.INVALID || courtFeeCents < 0
+                || shuttleFeeCents == Money.INVALID || shuttleFeeCents < 0) {
+            message.setValue(R.string.reconcile_no_fees);
+            return;
+        }
+        reconciling = true;
+        reconcileExecutor.execute(() -> {
+            Reconciliation.Result result = null;
+            try {
+                result = Reconciliation.reconcile(players, courtFeeCents, shuttleFeeCents, reconcileCancelled);
+            } catch (CancellationException e) {
+                // The screen is gone for good
+                return;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Reconciliation failed", e);
+            }
+
+            Reconciliation.Result finished = result;
+            mainHandler.post(() -> {
+                reconciling = false;
+                if (finished == null) {
+                    message.setValue(R.string.error_reconcile_failed);
+                } else {
+                    reconciliation.setValue(finished);
+                }
+            });
+        });
+    }
+
+    /**
+     * Records a split night in the session ledger, so each player's share is
+     * added to what they owe there. What players have paid is left alone.
+     */
+    public void recordSplit(SessionSplitInput input, SessionSplitter.Result split) {
+        SessionLedger.Session session = input.toSession(split, System.currentTimeMillis());
+        List<SessionLedger.Attendee> attendees = input.attendees(split);
+        Context appContext = getApplication();
+        importExecutor.execute(() -> {
+            int messageRes;
+            try {
+                SessionLedger.getInstance(appContext).recordSession(session, attendees);
+                messageRes = R.string.session_saved;
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Recording the split failed", e);
+                messageRes = R.string.error_split_record_failed;
+            }
+            int resultMessage = messageRes;
+            mainHandler.post(() -> message.setValue(resultMessage));
+        });
+    }
+
+    /** Exports into the document the user just created, using the type picked before. */
+    public void export(Uri uri) {
+        String kindName = savedState.remove(KEY_PENDING_EXPORT);
+        if (uri == null || kindName == null || exportProgress.getValue() != null) {
+            return;
+        }
+        RosterExporter.Kind kind = RosterExporter.Kind.valueOf(kindName);
+
+        exportCancelled.set(false);
+        exportProgress.setValue(new long[] {0, 0});
+        Context appContext = getApplication();
+        exportExecutor.execute(() -> {
+            File spool = new File(appContext.getCacheDir(), "export.spool");
+            int messageRes;
+            try {
+                // Include edits that are still on their way to the store
+                repository.awaitPendingWrites();
+                long total = RosterExporter.snapshot(playerStore, SessionLedger.getInstance(appContext), kind, spool);
+                try (OutputStream out = appContext.getContentResolver().openOutputStream(uri, "wt")) {
+                    if (out == null) {
+                        throw new IOException("Could not open " + uri);
+                    }
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    RosterExporter.write(spool, total, kind, writer,
+                            (done, all) -> exportProgress.postValue(new long[] {done, all}),
+                            exportCancelled);
+                }
+                messageRes = R.string.export_done;
+            } catch (CancellationException | InterruptedException e) {
+                deletePartialExport(appContext, uri);
+                messageRes = R.string.export_cancelled;
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Export failed", e);
+                deletePartialExport(appContext, uri);
+                messageRes = R.string.error_export_failed;
+            } finally {
+                spool.delete();
+            }
+
+            int resultMessage = messageRes;
+            mainHandler.post(() -> {
+                exportProgress.setValue(null);
+                message.setValue(resultMessage);
+            });
+        });
+    }
+
+    public void cancelExport() {
+        exportCancelled.set(true);
+    }
+
+    private void filter() {
+        // Whatever the previous query still has to do is no longer wanted
+        filterCancelled.set(true);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        filterCancelled = cancelled;
+
+        RosterColumns players = roster;
+        String query = getQuery();
+        RosterIndex.Sort sort = getSort();
+        filterExecutor.execute(() -> {
+            if (cancelled.get()) {
+                return;
+            }
+            // Rebuilt only for a new roster, and never cancelled: the next query needs it too
+            if (rosterIndex == null || rosterIndex.getPlayers() != players) {
+                rosterIndex = RosterIndex.build(players, collator, rosterIndex);
+            }
+            try {
+                List<Player> visible = rosterIndex.query(query, sort, cancelled);
+                mainHandler.post(() -> {
+                    if (!cancelled.get()) {
+                        visiblePlayers.setValue(visible);
+                    }
+                });
+            } catch (CancellationException e) {
+                // A newer query is queued behind this one
+            }
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        // The screen is gone for good, not just rotating
+        exportCancelled.set(true);
+        filterCancelled.set(true);
+        reconcileCancelled.set(true);
+        importExecutor.shutdown();
+        exportExecutor.shutdown();
+        filterExecutor.shutdown();
+        reconcileExecutor.shutdown();
+    }
+
+    private static void deletePartialExport(Context context, Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(context.getContentResolver(), uri);
+        } catch (FileNotFoundException | RuntimeException e) {
+            // Not every provider allows deletes; the partial file is left for the user
+            Log.w(TAG, "Could not delete partial export " + uri, e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.bmapp;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks what every player has paid against what they owe for the fees set
+ * on the main screen, and works out who should pay whom to settle up.
+ *
+ * Each player's amount is taken as what they paid. What they owe is their
+ * {@link FeeCalculator} share, with the roster's own member and non-member
+ * counts; the extra cents of an uneven split go to the first players of each
+ * group in id order. The roster is read once to count the groups and once to
+ * price each row, straight from its columns, so thousands of players take a
+ * few milliseconds.
+ *
+ * Settling up pairs an underpaid player with an overpaid one who is owed the
+ * same amount first, as that settles both with one transfer. The rest are
+ * settled largest first, each transfer clearing at least one side, so there
+ * are never more transfers than players to settle. Whatever the players paid
+ * more or less than the fees in total is settled with the club, shown as
+ * {@link #CLUB}.
+ *
+ * This is a heuristic, not the fewest transfers possible. The fewest is the
+ * number of players to settle less the most groups they can be split into
+ * that each balance out on their own, and finding those groups is NP-hard.
+ * Pairs are the only groups looked for, so with debts of 6, 3 and 1 against
+ * credits of 4, 4 and 2 this takes five transfers where four would do: 6
+ * against 4 and 2, and 3 and 1 against the other 4.
+ */
+final class Reconciliation {
+
+    /** Stands for the club in {@link Result#fromIds} and {@link Result#toIds}; player ids start at 1. */
+    static final long CLUB = 0;
+
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    static final class Result {
+        /** The roster this was worked out from. */
+        final RosterColumns players;
+        final int members;
+        final int nonMembers;
+        /** What all players owe together; the fees to collect. */
+        final long dueCents;
+        final long paidCents;
+        /** Rows of players who paid less than they owe, most owed first. */
+        final int[] underpaid;
+        /** Rows of players who paid more than they owe, most overpaid first. */
+        final int[] overpaid;
+        /** What each row paid minus what it owes. */
+        final long[] balanceCents;
+        /** Transfer {@code i} is {@code transferCents[i]} from {@code fromIds[i]} to {@code toIds[i]}. */
+        final long[] fromIds;
+        final long[] toIds;
+        final long[] transferCents;
+
+        Result(RosterColumns players, int members, int nonMembers, long dueCents, long paidCents,
+               int[] underpaid, int[] overpaid, long[] balanceCents,
+               long[] fromIds, long[] toIds, long[] transferCents) {
+            this.players = players;
+            this.members = members;
+            this.nonMembers = nonMembers;
+            this.dueCents = dueCents;
+            this.paidCents = paidCents;
+            this.underpaid = underpaid;
+            this.overpaid = overpaid;
+            this.balanceCents = balanceCents;
+            this.fromIds = fromIds;
+            this.toIds = toIds;
+            this.transferCents = transferCents;
+        }
+
+        int transferCount() {
+            return transferCents.length;
+        }
+    }
+
+    private Reconciliation() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a fee is negative or the roster is empty
+     * @throws ArithmeticException if the amounts are too large for exact arithmetic
+     * @throws CancellationException if {@code cancelled} is set meanwhile
+     */
+    static Result reconcile(RosterColumns players, long courtFeeCents, long shuttleFeeCents,
+                            AtomicBoolean cancelled) {
+        int size = players.size();
+        int members = 0;
+        for (int i = 0; i < size; i++) {
+            if (players.memberAt(i)) {
+                members++;
+            }
+        }
+        FeeCalculator.Result shares = new FeeCalculator.Result();
+        FeeCalculator.calculate(courtFeeCents, shuttleFeeCents, members, size - members, shares);
+
+        long[] balance = new long[size];
+        int underpaidCount = 0;
+        int overpaidCount = 0;
+        int memberExtra = shares.membersPayingExtraCent;
+        int nonMemberExtra = shares.nonMembersPayingExtraCent;
+        for (int i = 0; i < size; i++) {
+            long due;
+            if (players.memberAt(i)) {
+                due = shares.memberShareCents + (memberExtra-- > 0 ? 1 : 0);
+            } else {
+                due = shares.nonMemberShareCents + (nonMemberExtra-- > 0 ? 1 : 0);
+            }
+            balance[i] = Math.subtractExact(players.centsAt(i), due);
+            if (balance[i] < 0) {
+                underpaidCount++;
+            } else if (balance[i] > 0) {
+                overpaidCount++;
+            }
+            checkCancelled(i, cancelled);
+        }
+
+        int[] underpaid = new int[underpaidCount];
+        int[] overpaid = new int[overpaidCount];
+        underpaidCount = 0;
+        overpaidCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (balance[i] < 0) {
+                underpaid[underpaidCount++] = i;
+            } else if (balance[i] > 0) {
+                overpaid[overpaidCount++] = i;
+            }
+        }
+        // Largest first; equal balances stay in id order
+        RosterColumns.sort(underpaid, (a, b) -> Long.compare(balance[a], balance[b]));
+        RosterColumns.sort(overpaid, (a, b) -> Long.compare(balance[b], balance[a]));
+        checkCancelled(0, cancelled);
+
+        Transfers transfers = settle(players, balance, underpaid, overpaid);
+        return new Result(players, members, size - members, shares.totalCents, players.totalCents(),
+                underpaid, overpaid, balance,
+                Arrays.copyOf(transfers.fromIds, transfers.count),
+                Arrays.copyOf(transfers.toIds, transfers.count),
+                Arrays.copyOf(transfers.cents, transfers.count));
+    }
+
+    private static Transfers settle(RosterColumns players, long[] balance, int[] underpaid, int[] overpaid) {
+        // What is still to settle, by position in underpaid and overpaid
+        long[] owes = new long[underpaid.length];
+        long[] owed = new long[overpaid.length];
+        for (int i = 0; i < underpaid.length; i++) {
+            owes[i] = -balance[underpaid[i]];
+        }
+        for (int i = 0; i < overpaid.length; i++) {
+            owed[i] = balance[overpaid[i]];
+        }
+        Transfers transfers = new Transfers(underpaid.length + overpaid.length);
+
+        // Both lists run from largest to smallest, so equal amounts meet in one merge
+        int d = 0;
+        int c = 0;
+        while (d < owes.length && c < owed.length) {
+            if (owes[d] == owed[c]) {
+                transfers.add(players.idAt(underpaid[d]), players.idAt(overpaid[c]), owes[d]);
+                owes[d++] = 0;
+                owed[c++] = 0;
+            } else if (owes[d] > owed[c]) {
+                d++;
+            } else {
+                c++;
+            }
+        }
+
+        // Largest debt against largest credit; each step settles at least one of them
+        d = nextUnsettled(owes, 0);
+        c = nextUnsettled(owed, 0);
+        while (d < owes.length && c < owed.length) {
+            long amount = Math.min(owes[d], owed[c]);
+            transfers.add(players.idAt(underpaid[d]), players.idAt(overpaid[c]), amount);
+            owes[d] -= amount;
+            owed[c] -= amount;
+            if (owes[d] == 0) {
+                d = nextUnsettled(owes, d + 1);
+            }
+            if (owed[c] == 0) {
+                c = nextUnsettled(owed, c + 1);
+            }
+        }
+
+        // Only one side can be left: the fees were not fully paid, or more than paid
+        for (; d < owes.length; d = nextUnsettled(owes, d + 1)) {
+            transfers.add(players.idAt(underpaid[d]), CLUB, owes[d]);
+        }
+        for (; c < owed.length; c = nextUnsettled(owed, c + 1)) {
+            transfers.add(CLUB, players.idAt(overpaid[c]), owed[c]);
+        }
+        return transfers;
+    }
+
+    private static int nextUnsettled(long[] amounts, int from) {
+        while (from < amounts.length && amounts[from] == 0) {
+            from++;
+        }
+        return from;
+    }
+
+    private static void checkCancelled(int step, AtomicBoolean cancelled) {
+        if (step % CANCEL_CHECK_INTERVAL == 0 && cancelled.get()) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Transfers as they are found; never more than there are players to settle. */
+    private static final class Transfers {
+        final long[] fromIds;
+        final long[] toIds;
+        final long[] cents;
+        int count;
+
+        Transfers(int capacity) {
+            fromIds = new long[capacity];
+            toIds = new long[capacity];
+            cents = new long[capacity];
+        }
+
+        void add(long fromId, long toId, long amount) {
+            fromIds[count] = fromId;
+            toIds[count] = toId;
+            cents[count] = amount;
+            count++;
+        }
+    }
+}
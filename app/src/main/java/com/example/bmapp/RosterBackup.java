@@ -0,0 +1,674 @@
+package com.example.bmapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Local backups of the roster and recorded sessions, kept as a chain of
+ * compressed, checksummed snapshot files in one private directory.
+ *
+ * The first snapshot of a chain holds everything. Each later one holds only
+ * what changed since the one before: players added, changed or removed, and
+ * sessions recorded since. What the latest snapshot held is remembered in a
+ * state file as a 20-byte digest per player: id, amount and a checksum of
+ * the name and member tag. Working out a delta therefore
+ * reads the roster once and nothing else, and a run that finds nothing new
+ * writes nothing.
+ *
+ * A chain is closed after {@link #MAX_DELTAS} deltas, or sooner once its
+ * deltas add up to more than its full snapshot, and the next run starts a new
+ * one. The two newest chains are kept, so the directory never holds more
+ * than {@code 2 * (MAX_DELTAS + 1)} snapshots.
+ *
+ * Snapshot layout (big-endian):
+ * <pre>
+ *   header  magic "BMBK" | u16 version | u8 kind | u8 reserved | i64 sequence | i64 base sequence
+ *           | i64 created at | i64 payload bytes | i32 CRC32 of payload
+ *   payload deflated records, each a tag byte then its fields, ending with 'E'
+ * </pre>
+ * Version 2 added the member tag to player records, and version 3 writes
+ * names as an i32 byte length and UTF-8 instead of {@code writeUTF}, which
+ * can't take names past 64 KB. Older files are still read; in version 1
+ * everyone is a non-member.
+ * Restoring replays the newest intact full snapshot and the deltas after it,
+ * stopping at the first one that is missing or fails its checksum.
+ */
+final class RosterBackup {
+
+    enum Outcome {
+        FULL, DELTA, UNCHANGED
+    }
+
+    /** Where backups read from, such as the player store and the session ledger. */
+    interface Source {
+        /** Every player, in id order. */
+        void forEachPlayer(PlayerVisitor visitor) throws IOException;
+
+        /** Every session after {@code afterId}, in id order, with its attendees. */
+        void forEachSessionAfter(long afterId, SessionLedger.RecordVisitor visitor) throws IOException;
+    }
+
+    interface PlayerVisitor {
+        void visit(long id, String name, long cents, boolean member) throws IOException;
+    }
+
+    /** A recorded session as kept in a backup. */
+    static final class SessionRecord {
+        final long sessionId;
+        final SessionLedger.Session session;
+        final List<SessionLedger.Attendee> attendees;
+
+        SessionRecord(long sessionId, SessionLedger.Session session, List<SessionLedger.Attendee> attendees) {
+            this.sessionId = sessionId;
+            this.session = session;
+            this.attendees = attendees;
+        }
+    }
+
+    /** Everything a backup held, ready to be written back. */
+    static final class Contents {
+        final long createdAt;
+        final List<Player> players;
+        final List<SessionRecord> sessions;
+
+        Contents(long createdAt, List<Player> players, List<SessionRecord> sessions) {
+            this.createdAt = createdAt;
+            this.players = players;
+            this.sessions = sessions;
+        }
+    }
+
+    static final int MAX_DELTAS = 6;
+    static final int KEPT_CHAINS = 2;
+    static final int FORMAT_VERSION = 3;
+
+    /**
+     * Held while a backup runs. Hold it while restoring too, so no backup
+     * reads the store half way through being replaced.
+     */
+    static final Object LOCK = new Object();
+
+    private static final int MAGIC = 0x424D424B; // "BMBK"
+    private static final int STATE_MAGIC = 0x424D5354; // "BMST"
+    private static final int HEADER_SIZE = 44;
+    private static final int STATE_TRAILER_SIZE = 48;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte KIND_FULL = 0;
+    private static final byte KIND_DELTA = 1;
+
+    private static final byte TAG_PLAYER = 'P';
+    private static final byte TAG_REMOVED = 'R';
+    private static final byte TAG_SESSION = 'S';
+    private static final byte TAG_END = 'E';
+
+    private static final String PREFIX = "snapshot-";
+    private static final String FULL_SUFFIX = "-full.bmb";
+    private static final String DELTA_SUFFIX = "-delta.bmb";
+    private static final String STATE_FILE = "backup.state";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private RosterBackup() {
+    }
+
+    /**
+     * Writes the next snapshot of {@code source} into {@code dir}: a delta if
+     * the current chain can take one, otherwise a full snapshot. Then drops
+     * chains that are no longer kept.
+     */
+    static Outcome backUp(File dir, Source source, long now) throws IOException {
+        synchronized (LOCK) {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            return backUpLocked(dir, source, now);
+        }
+    }
+
+    private static Outcome backUpLocked(File dir, Source source, long now) throws IOException {
+        deleteLeftovers(dir);
+        List<SnapshotFile> snapshots = list(dir);
+        SnapshotFile latest = snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+
+        Outcome outcome;
+        StateReader state = latest != null ? StateReader.open(new File(dir, STATE_FILE), latest.sequence) : null;
+        try {
+            if (state != null && (state.deltas >= MAX_DELTAS || state.chainDeltaBytes > state.fullBytes)) {
+                state.close();
+                state = null;
+            }
+            outcome = write(dir, source, now, latest, state);
+        } catch (CorruptStateException e) {
+            // Nothing written from the bad digest was kept; start a new chain instead
+            new File(dir, STATE_FILE).delete();
+            outcome = write(dir, source, now, latest, null);
+        } finally {
+            if (state != null) {
+                state.close();
+            }
+        }
+        prune(dir);
+        return outcome;
+    }
+
+    /** Reads the newest backup that is intact, or returns null if there is none. */
+    static Contents restoreLatest(File dir) throws IOException {
+        List<SnapshotFile> snapshots = list(dir);
+        for (int start = snapshots.size() - 1; start >= 0; start--) {
+            SnapshotFile full = snapshots.get(start);
+            if (!full.full) {
+                continue;
+            }
+            Header header = verify(full.file);
+            if (header == null) {
+                continue;
+            }
+            Map<Long, Player> players = new TreeMap<>();
+            Map<Long, SessionRecord> sessions = new TreeMap<>();
+            apply(full.file, header.version, players, sessions);
+            long createdAt = header.createdAt;
+            long previous = header.sequence;
+            for (int i = start + 1; i < snapshots.size() && !snapshots.get(i).full; i++) {
+                Header delta = verify(snapshots.get(i).file);
+                if (delta == null || delta.baseSequence != previous) {
+                    break;
+                }
+                apply(snapshots.get(i).file, delta.version, players, sessions);
+                createdAt = delta.createdAt;
+                previous = delta.sequence;
+            }
+            return new Contents(createdAt, new ArrayList<>(players.values()), new ArrayList<>(sessions.values()));
+        }
+        return null;
+    }
+
+    /**
+     * Forgets what the latest snapshot held, so the next backup is a full one.
+     * Call after restoring, when the store no longer matches the chain.
+     */
+    static void startNewChain(File dir) {
+        new File(dir, STATE_FILE).delete();
+    }
+
+    private static Outcome write(File dir, Source source, long now, SnapshotFile latest,
+                                 StateReader previous) throws IOException {
+        boolean full = previous == null;
+        long sequence = latest != null ? latest.sequence + 1 : 1;
+        File snapshotTmp = new File(dir, fileName(sequence, full) + TMP_SUFFIX);
+        File stateTmp = new File(dir, STATE_FILE + TMP_SUFFIX);
+        boolean kept = false;
+        try (SnapshotWriter snapshot = new SnapshotWriter(snapshotTmp);
+             StateWriter digest = new StateWriter(stateTmp)) {
+            // Walks the roster and the previous digest side by side, both in id order
+            source.forEachPlayer((id, name, cents, member) -> {
+                int nameCrc = nameCrc(name, member);
+                digest.add(id, cents, nameCrc);
+                if (previous == null) {
+                    snapshot.writePlayer(id, name, cents, member);
+                    return;
+                }
+                while (previous.hasEntry() && previous.id < id) {
+                    snapshot.writeRemoved(previous.id);
+                    previous.next();
+                }
+                if (previous.hasEntry() && previous.id == id) {
+                    if (previous.cents != cents || previous.nameCrc != nameCrc) {
+                        snapshot.writePlayer(id, name, cents, member);
+                    }
+                    previous.next();
+                } else {
+                    snapshot.writePlayer(id, name, cents, member);
+                }
+            });
+            if (previous != null) {
+                while (previous.hasEntry()) {
+                    snapshot.writeRemoved(previous.id);
+                    previous.next();
+                }
+                previous.checkEnd();
+            }
+
+            long afterSession = previous != null ? previous.lastSessionId : 0;
+            long[] lastSession = {afterSession};
+            source.forEachSessionAfter(afterSession, (sessionId, session, attendees) -> {
+                snapshot.writeSession(sessionId, session, attendees);
+                lastSession[0] = sessionId;
+            });
+
+            if (!full && snapshot.records == 0) {
+                return Outcome.UNCHANGED;
+            }
+            long bytes = snapshot.finish(full ? KIND_FULL : KIND_DELTA, sequence,
+                    full ? 0 : latest.sequence, now);
+            if (full) {
+                digest.finish(sequence, lastSession[0], 0, 0, bytes);
+            } else {
+                digest.finish(sequence, lastSession[0], previous.deltas + 1,
+                        previous.chainDeltaBytes + bytes, previous.fullBytes);
+            }
+            kept = true;
+        } finally {
+            if (!kept) {
+                snapshotTmp.delete();
+                stateTmp.delete();
+            }
+        }
+
+        // The snapshot goes in first; a state file naming an older sequence only means a full one next time
+        rename(snapshotTmp, new File(dir, fileName(sequence, full)));
+        rename(stateTmp, new File(dir, STATE_FILE));
+        return full ? Outcome.FULL : Outcome.DELTA;
+    }
+
+    private static void prune(File dir) {
+        List<SnapshotFile> snapshots = list(dir);
+        int chains = 0;
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (snapshots.get(i).full && ++chains == KEPT_CHAINS) {
+                for (int j = 0; j < i; j++) {
+                    snapshots.get(j).file.delete();
+                }
+                return;
+            }
+        }
+    }
+
+    // Snapshots in sequence order
+    private static List<SnapshotFile> list(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<SnapshotFile> snapshots = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            boolean full = name.endsWith(FULL_SUFFIX);
+            if (!name.startsWith(PREFIX) || !(full || name.endsWith(DELTA_SUFFIX))) {
+                continue;
+            }
+            try {
+                long sequence = Long.parseLong(name.substring(PREFIX.length(), name.indexOf('-', PREFIX.length())));
+                snapshots.add(new SnapshotFile(file, sequence, full));
+            } catch (NumberFormatException e) {
+                // Not one of ours
+            }
+        }
+        Collections.sort(snapshots, (a, b) -> Long.compare(a.sequence, b.sequence));
+        return snapshots;
+    }
+
+    private static String fileName(long sequence, boolean full) {
+        return PREFIX + String.format(java.util.Locale.ROOT, "%010d", sequence) + (full ? FULL_SUFFIX : DELTA_SUFFIX);
+    }
+
+    private static void deleteLeftovers(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(TMP_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        if (!from.renameTo(to)) {
+            throw new IOException("Could not replace " + to);
+        }
+    }
+
+    private static int nameCrc(String name, boolean member) {
+        CRC32 crc = new CRC32();
+        crc.update(name.getBytes(StandardCharsets.UTF_8));
+        // Only members add a byte, so digests written before the tag existed still match
+        if (member) {
+            crc.update(1);
+        }
+        return (int) crc.getValue();
+    }
+
+    // The header, if the file is complete and its payload matches the checksum; otherwise null
+    private static Header verify(File file) throws IOException {
+        Header header;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE))) {
+            header = Header.read(in);
+            if (header == null || header.payloadBytes != file.length() - HEADER_SIZE) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+            return (int) crc.getValue() == header.payloadCrc ? header : null;
+        }
+    }
+
+    private static void apply(File file, int version, Map<Long, Player> players, Map<Long, SessionRecord> sessions)
+            throws IOException {
+        try (FileInputStream raw = new FileInputStream(file)) {
+            long skipped = raw.skip(HEADER_SIZE);
+            if (skipped != HEADER_SIZE) {
+                throw new IOException("Truncated " + file);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new InflaterInputStream(raw), BUFFER_SIZE));
+            byte tag;
+            while ((tag = in.readByte()) != TAG_END) {
+                if (tag == TAG_PLAYER) {
+                    long id = in.readLong();
+                    String name = version >= 3 ? Utf8Strings.read(in) : in.readUTF();
+                    long cents = in.readLong();
+                    boolean member = version >= 2 && in.readBoolean();
+                    players.put(id, new Player(id, name, cents, member));
+                } else if (tag == TAG_REMOVED) {
+                    players.remove(in.readLong());
+                } else if (tag == TAG_SESSION) {
+                    long sessionId = in.readLong();
+                    SessionLedger.Session session = new SessionLedger.Session(in.readLong(), in.readLong(),
+                            in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+                    int count = in.readInt();
+                    List<SessionLedger.Attendee> attendees = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        attendees.add(new SessionLedger.Attendee(in.readLong(), in.readBoolean(), in.readLong()));
+                    }
+                    sessions.put(sessionId, new SessionRecord(sessionId, session, attendees));
+                } else {
+                    throw new IOException("Unknown record " + tag + " in " + file);
+                }
+            }
+        }
+    }
+
+    private static final class SnapshotFile {
+        final File file;
+        final long sequence;
+        final boolean full;
+
+        SnapshotFile(File file, long sequence, boolean full) {
+            this.file = file;
+            this.sequence = sequence;
+            this.full = full;
+        }
+    }
+
+    private static final class Header {
+        final int version;
+        final long sequence;
+        final long baseSequence;
+        final long createdAt;
+        final long payloadBytes;
+        final int payloadCrc;
+
+        private Header(int version, long sequence, long baseSequence, long createdAt, long payloadBytes,
+                       int payloadCrc) {
+            this.version = version;
+            this.sequence = sequence;
+            this.baseSequence = baseSequence;
+            this.createdAt = createdAt;
+            this.payloadBytes = payloadBytes;
+            this.payloadCrc = payloadCrc;
+        }
+
+        // Null if the file is not a snapshot this version can read
+        static Header read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            int version = in.readUnsignedShort();
+            if (version < 1 || version > FORMAT_VERSION) {
+                return null;
+            }
+            in.readUnsignedByte();
+            in.readUnsignedByte();
+            return new Header(version, in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readInt());
+        }
+    }
+
+    /** Streams deflated records after a header that is filled in once the payload is written. */
+    private static final class SnapshotWriter implements Closeable {
+        private final RandomAccessFile file;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+        private final OutputStream compressed;
+        private final DeflaterOutputStream deflated;
+        private final DataOutputStream out;
+        int records;
+
+        SnapshotWriter(File target) throws IOException {
+            file = new RandomAccessFile(target, "rw");
+            file.setLength(0);
+            file.seek(HEADER_SIZE);
+            compressed = new BufferedOutputStream(Channels.newOutputStream(file.getChannel()), BUFFER_SIZE);
+            deflated = new DeflaterOutputStream(new CheckedOutputStream(compressed, crc), deflater, BUFFER_SIZE);
+            out = new DataOutputStream(new BufferedOutputStream(deflated, BUFFER_SIZE));
+        }
+
+        void writePlayer(long id, String name, long cents, boolean member) throws IOException {
+            out.writeByte(TAG_PLAYER);
+            out.writeLong(id);
+            Utf8Strings.write(out, name);
+            out.writeLong(cents);
+            out.writeBoolean(member);
+            records++;
+        }
+
+        void writeRemoved(long id) throws IOException {
+            out.writeByte(TAG_REMOVED);
+            out.writeLong(id);
+            records++;
+        }
+
+        void writeSession(long sessionId, SessionLedger.Session session,
+                          List<SessionLedger.Attendee> attendees) throws IOException {
+            out.writeByte(TAG_SESSION);
+            out.writeLong(sessionId);
+            out.writeLong(session.playedAt);
+            out.writeLong(session.courtFeeCents);
+            out.writeLong(session.shuttleFeeCents);
+            out.writeInt(session.numMembers);
+            out.writeInt(session.numNonMembers);
+            out.writeLong(session.memberShareCents);
+            out.writeLong(session.nonMemberShareCents);
+            out.writeLong(session.totalCents);
+            out.writeInt(attendees.size());
+            for (SessionLedger.Attendee attendee : attendees) {
+                out.writeLong(attendee.playerId);
+                out.writeBoolean(attendee.member);
+                out.writeLong(attendee.owedCents);
+            }
+            records++;
+        }
+
+        // Ends the payload, fills in the header and syncs; returns the file size
+        long finish(byte kind, long sequence, long baseSequence, long createdAt) throws IOException {
+            out.writeByte(TAG_END);
+            out.flush();
+            deflated.finish();
+            compressed.flush();
+            long payloadBytes = file.length() - HEADER_SIZE;
+            file.seek(0);
+            file.writeInt(MAGIC);
+            file.writeShort(FORMAT_VERSION);
+            file.writeByte(kind);
+            file.writeByte(0);
+            file.writeLong(sequence);
+            file.writeLong(baseSequence);
+            file.writeLong(createdAt);
+            file.writeLong(payloadBytes);
+            file.writeInt((int) crc.getValue());
+            file.getFD().sync();
+            return file.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            file.close();
+        }
+    }
+
+    /**
+     * Per-player digests of the latest snapshot, in id order, followed by a
+     * trailer: i64 sequence | i64 last session id | i32 deltas in chain |
+     * i64 delta bytes in chain | i64 full snapshot bytes | i32 count |
+     * i32 CRC32 of the digests | magic "BMST".
+     */
+    private static final class StateWriter implements Closeable {
+        private final CRC32 crc = new CRC32();
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private int count;
+
+        StateWriter(File target) throws IOException {
+            file = new FileOutputStream(target);
+            out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), BUFFER_SIZE));
+        }
+
+        void add(long id, long cents, int nameCrc) throws IOException {
+            out.writeLong(id);
+            out.writeLong(cents);
+            out.writeInt(nameCrc);
+            count++;
+        }
+
+        void finish(long sequence, long lastSessionId, int deltas, long chainDeltaBytes,
+                    long fullBytes) throws IOException {
+            out.flush();
+            int digestCrc = (int) crc.getValue();
+            out.writeLong(sequence);
+            out.writeLong(lastSessionId);
+            out.writeInt(deltas);
+            out.writeLong(chainDeltaBytes);
+            out.writeLong(fullBytes);
+            out.writeInt(count);
+            out.writeInt(digestCrc);
+            out.writeInt(STATE_MAGIC);
+            out.flush();
+            file.getFD().sync();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Reads a state file's digests one at a time; the trailer is read first. */
+    private static final class StateReader implements Closeable {
+        final long lastSessionId;
+        final int deltas;
+        final long chainDeltaBytes;
+        final long fullBytes;
+        private final int count;
+        private final int digestCrc;
+        private final CRC32 crc = new CRC32();
+        private final DataInputStream in;
+        private int read;
+        private boolean hasEntry;
+        long id;
+        long cents;
+        int nameCrc;
+
+        private StateReader(InputStream raw, long lastSessionId, int deltas, long chainDeltaBytes, long fullBytes,
+                            int count, int digestCrc) throws IOException {
+            this.lastSessionId = lastSessionId;
+            this.deltas = deltas;
+            this.chainDeltaBytes = chainDeltaBytes;
+            this.fullBytes = fullBytes;
+            this.count = count;
+            this.digestCrc = digestCrc;
+            // Checked above the buffer, so the read-ahead into the trailer is not counted
+            this.in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(raw, BUFFER_SIZE), crc));
+            next();
+        }
+
+        // Null unless the file exists, is whole, and describes snapshot {@code sequence}
+        static StateReader open(File file, long sequence) throws IOException {
+            long length = file.length();
+            if (length < STATE_TRAILER_SIZE) {
+                return null;
+            }
+            long stateSequence;
+            long lastSessionId;
+            int deltas;
+            long chainDeltaBytes;
+            long fullBytes;
+            int count;
+            int digestCrc;
+            try (RandomAccessFile trailer = new RandomAccessFile(file, "r")) {
+                trailer.seek(length - STATE_TRAILER_SIZE);
+                stateSequence = trailer.readLong();
+                lastSessionId = trailer.readLong();
+                deltas = trailer.readInt();
+                chainDeltaBytes = trailer.readLong();
+                fullBytes = trailer.readLong();
+                count = trailer.readInt();
+                digestCrc = trailer.readInt();
+                if (trailer.readInt() != STATE_MAGIC || stateSequence != sequence
+                        || length != STATE_TRAILER_SIZE + 20L * count) {
+                    return null;
+                }
+            }
+            return new StateReader(new FileInputStream(file), lastSessionId, deltas, chainDeltaBytes, fullBytes,
+                    count, digestCrc);
+        }
+
+        boolean hasEntry() {
+            return hasEntry;
+        }
+
+        void next() throws IOException {
+            hasEntry = read < count;
+            if (hasEntry) {
+                id = in.readLong();
+                cents = in.readLong();
+                nameCrc = in.readInt();
+                read++;
+            }
+        }
+
+        // Once every digest is read, checks they match the trailer's checksum
+        void checkEnd() throws CorruptStateException {
+            if ((int) crc.getValue() != digestCrc) {
+                throw new CorruptStateException();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class CorruptStateException extends IOException {
+        CorruptStateException() {
+            super("Backup state does not match its checksum");
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.bmapp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Compact, versioned binary encoding of the player roster.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header  magic "BMRS" | u16 version | u16 reserved | i32 count | i64 payload bytes | i32 CRC32 of payload
+ *   payload count x ( varint id | varint name length | UTF-8 name | i64 amount in cents | u8 flags )
+ * </pre>
+ * Bit 0 of the flags marks a club member.
+ *
+ * Players are written and read one at a time through NIO channels with one
+ * reusable buffer, so a roster of any size costs the same memory, and no
+ * reflection is involved, so the format is safe under R8. A roster is
+ * written at the channel's position and reading stops at its end, so it can
+ * be followed by other data in the same file, as in the export spool; see
+ * {@link RosterExporter}.
+ */
+public final class RosterCodec {
+
+    public interface PlayerVisitor {
+        void visit(long id, String name, long cents, boolean member) throws IOException;
+    }
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int HEADER_SIZE = 24;
+    private static final int MAGIC = 0x53524D42; // "BMRS" read little-endian
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLAG_MEMBER = 1;
+    // Two varints at their longest, the amount and the flags
+    private static final int MAX_RECORD_OVERHEAD = 10 + 5 + 8 + 1;
+
+    private RosterCodec() {
+    }
+
+    /**
+     * Reads a roster written by {@link Writer}, handing each player to
+     * {@code visitor} as it is read, and returns how many there were. The
+     * checksum is checked once the last player is read, so a caller that must
+     * not act on a damaged roster should keep what it is handed until then.
+     *
+     * @throws IOException if the header is not a roster, the version is newer
+     *                     than this build understands, or the payload is cut
+     *                     short or does not match its checksum
+     */
+    public static int read(ReadableByteChannel channel, PlayerVisitor visitor) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) {
+                throw new IOException("Truncated roster header");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a roster");
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported roster format version " + version);
+        }
+        header.getShort();
+        int count = header.getInt();
+        long payloadBytes = header.getLong();
+        int expectedCrc = header.getInt();
+        if (count < 0 || payloadBytes < 0) {
+            throw new IOException("Corrupt roster header");
+        }
+
+        PayloadReader reader = new PayloadReader(channel, payloadBytes);
+        for (int i = 0; i < count; i++) {
+            long id = reader.varLong();
+            long nameLength = reader.varLong();
+            if (nameLength < 0 || nameLength > payloadBytes) {
+                throw new IOException("Corrupt roster record " + i);
+            }
+            String name = new String(reader.bytes((int) nameLength), StandardCharsets.UTF_8);
+            long cents = reader.longValue();
+            boolean member = (reader.byteValue() & FLAG_MEMBER) != 0;
+            visitor.visit(id, name, cents, member);
+        }
+        if (reader.remaining() != 0 || (int) reader.crc.getValue() != expectedCrc) {
+            throw new IOException("Roster checksum mismatch");
+        }
+        return count;
+    }
+
+    /**
+     * Writes a roster at a channel's position, one player at a time. The
+     * header goes in last, once the payload length and checksum are known.
+     */
+    public static final class Writer {
+        private final FileChannel channel;
+        private final long headerPosition;
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long payloadBytes;
+        private int count;
+
+        public Writer(FileChannel channel) throws IOException {
+            this.channel = channel;
+            headerPosition = channel.position();
+            channel.position(headerPosition + HEADER_SIZE);
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void add(long id, String name, long cents, boolean member) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            int recordSize = MAX_RECORD_OVERHEAD + nameBytes.length;
+            if (buffer.remaining() < recordSize) {
+                flush();
+            }
+            if (buffer.capacity() < recordSize) {
+                // Only a name bigger than the whole buffer gets here
+                buffer = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            putVarLong(buffer, id);
+            putVarLong(buffer, nameBytes.length);
+            buffer.put(nameBytes);
+            buffer.putLong(cents);
+            buffer.put((byte) (member ? FLAG_MEMBER : 0));
+            count++;
+        }
+
+        /** Writes what is buffered and the header; the channel is left at the end of the roster. */
+        public void finish() throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putShort((short) FORMAT_VERSION);
+            header.putShort((short) 0);
+            header.putInt(count);
+            header.putLong(payloadBytes);
+            header.putInt((int) crc.getValue());
+            header.flip();
+            long position = headerPosition;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            int length = buffer.remaining();
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+            payloadBytes += length;
+        }
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // Buffered view of the payload that checksums bytes as they are pulled from the channel
+    private static final class PayloadReader {
+        final CRC32 crc = new CRC32();
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long unread;
+
+        PayloadReader(ReadableByteChannel channel, long payloadBytes) {
+            this.channel = channel;
+            this.unread = payloadBytes;
+            buffer.limit(0);
+        }
+
+        long remaining() {
+            return unread + buffer.remaining();
+        }
+
+        long varLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt roster varint");
+        }
+
+        long longValue() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        byte byteValue() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        byte[] bytes(int length) throws IOException {
+            byte[] out = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                require(1);
+                int chunk = Math.min(length - copied, buffer.remaining());
+                buffer.get(out, copied, chunk);
+                copied += chunk;
+            }
+            return out;
+        }
+
+        // Makes at least n bytes (n <= buffer capacity) available; never reads past the payload
+        private void require(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (unread == 0) {
+                    throw new IOException("Truncated roster payload");
+                }
+                int start = buffer.position();
+                int window = (int) Math.min(buffer.remaining(), unread);
+                int oldLimit = buffer.limit();
+                buffer.limit(start + window);
+                int read = channel.read(buffer);
+                buffer.limit(oldLimit);
+                if (read < 0) {
+                    throw new IOException("Truncated roster payload");
+                }
+                crc.update(buffer.array(), buffer.arrayOffset() + start, read);
+                unread -= read;
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.example.bmapp;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable roster in id order, stored as columns rather than one
+ * {@link Player} object per row.
+ *
+ * Ids, amounts in cents and member flags are primitive arrays beside an
+ * array of names, about 21 bytes a row against some 44 for a player object
+ * and the list's reference to it. The columns are cut into chunks of a few
+ * hundred rows, so a snapshot that differs by one edit copies one chunk and
+ * shares the rest, name strings included, with the snapshot it came from.
+ * That keeps undo history and the snapshots handed to other threads cheap.
+ *
+ * As a {@link List} it hands out {@link Player} objects made on demand, for
+ * the adapter and other code written against players. Loops over many rows
+ * should use {@link #idAt}, {@link #nameAt}, {@link #centsAt} and
+ * {@link #memberAt}, or the bulk {@link #sumCents}, {@link #filter} and
+ * {@link #sortedByCents}, which allocate nothing per row.
+ *
+ * Snapshots are never modified, so they can be read from any thread.
+ */
+public final class RosterColumns extends AbstractList<Player> implements RandomAccess {
+
+    /** Orders two rows by position, for {@link #sort}. */
+    public interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    public interface RowFilter {
+        boolean test(long id, String name, long cents);
+    }
+
+    public interface RowVisitor {
+        void visit(int index, long id, String name, long cents);
+    }
+
+    // Chunks are split once they pass twice this and dropped when emptied
+    static final int CHUNK_SIZE = 256;
+
+    private static final int INSERTION_SORT_SIZE = 32;
+
+    private static final class Chunk {
+        final long[] ids;
+        final long[] cents;
+        final String[] names;
+        final boolean[] members;
+
+        Chunk(long[] ids, long[] cents, String[] names, boolean[] members) {
+            this.ids = ids;
+            this.cents = cents;
+            this.names = names;
+            this.members = members;
+        }
+    }
+
+    private final Chunk[] chunks;
+    // Position of the first row of each chunk, then the size
+    private final int[] chunkStarts;
+    private final long totalCents;
+
+    private RosterColumns(Chunk[] chunks, long totalCents) {
+        this.chunks = chunks;
+        this.chunkStarts = new int[chunks.length + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            chunkStarts[c + 1] = chunkStarts[c] + chunks[c].ids.length;
+        }
+        this.totalCents = totalCents;
+    }
+
+    public static RosterColumns empty() {
+        return new RosterColumns(new Chunk[0], 0);
+    }
+
+    /**
+     * Copies {@code players} into columns.
+     *
+     * @throws IllegalArgumentException if the players are not in increasing id order
+     */
+    public static RosterColumns of(List<Player> players) {
+        int size = players.size();
+        Chunk[] chunks = new Chunk[(size + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        long total = 0;
+        long lastId = Long.MIN_VALUE;
+        for (int c = 0; c < chunks.length; c++) {
+            int length = Math.min(CHUNK_SIZE, size - c * CHUNK_SIZE);
+            long[] ids = new long[length];
+            long[] cents = new long[length];
+            String[] names = new String[length];
+            boolean[] members = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                Player player = players.get(c * CHUNK_SIZE + i);
+                if (player.getId() <= lastId) {
+                    throw new IllegalArgumentException("Players must be in increasing id order");
+                }
+                lastId = player.getId();
+                ids[i] = lastId;
+                cents[i] = player.getAmountCents();
+                names[i] = player.getName();
+                members[i] = player.isMember();
+                total += cents[i];
+            }
+            chunks[c] = new Chunk(ids, cents, names, members);
+        }
+        return new RosterColumns(chunks, total);
+    }
+
+    @Override
+    public int size() {
+        return chunkStarts[chunks.length];
+    }
+
+    /** Makes a {@link Player} for row {@code index}; a new object on every call. */
+    @Override
+    public Player get(int index) {
+        int c = chunkOf(index);
+        int row = index - chunkStarts[c];
+        Chunk chunk = chunks[c];
+        return new Player(chunk.ids[row], chunk.names[row], chunk.cents[row], chunk.members[row]);
+    }
+
+    public long idAt(int index) {
+        int c = chunkOf(index);
+        return chunks[c].ids[index - chunkStarts[c]];
+    }
+
+    public String nameAt(int index) {
+        int c = chunkOf(index);
+        return chunks[c].names[index - chunkStarts[c]];
+    }
+
+    public long centsAt(int index) {
+        int c = chunkOf(index);
+        return chunks[c].cents[index - chunkStarts[c]];
+    }
+
+    public boolean memberAt(int index) {
+        int c = chunkOf(index);
+        return chunks[c].members[index - chunkStarts[c]];
+    }
+
+    /** Sum of every amount, kept as snapshots are derived rather than added up. */
+    public long totalCents() {
+        return totalCents;
+    }
+
+    /** Row of the player with {@code id}, or -(insertion point) - 1 like {@link Arrays#binarySearch}. */
+    public int indexOfId(long id) {
+        if (chunks.length == 0) {
+            return -1;
+        }
+        // The chunk is the last one starting at or before id
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks[mid].ids[0] <= id) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        int row = Arrays.binarySearch(chunks[low].ids, id);
+        return row >= 0 ? chunkStarts[low] + row : -(chunkStarts[low] - row - 1) - 1;
+    }
+
+    /** Visits every row in order; cheaper than reading the rows one by one. */
+    public void forEachRow(RowVisitor visitor) {
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            for (int row = 0; row < chunk.ids.length; row++) {
+                visitor.visit(chunkStarts[c] + row, chunk.ids[row], chunk.names[row], chunk.cents[row]);
+            }
+        }
+    }
+
+    /**
+     * The players at {@code rows}, in that order, as a list that makes each
+     * {@link Player} when it is read. Holds on to {@code rows}.
+     */
+    public List<Player> rows(int[] rows) {
+        return new RowList(this, rows);
+    }
+
+    /** Rows for which {@code filter} holds, in order. */
+    public int[] filter(RowFilter filter) {
+        int[] matches = new int[size()];
+        int count = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            for (int row = 0; row < chunk.ids.length; row++) {
+                if (filter.test(chunk.ids[row], chunk.names[row], chunk.cents[row])) {
+                    matches[count++] = chunkStarts[c] + row;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /** Sum of the amounts of the rows for which {@code filter} holds; see {@link #totalCents} for all rows. */
+    public long sumCents(RowFilter filter) {
+        long sum = 0;
+        for (Chunk chunk : chunks) {
+            for (int row = 0; row < chunk.ids.length; row++) {
+                if (filter.test(chunk.ids[row], chunk.names[row], chunk.cents[row])) {
+                    sum += chunk.cents[row];
+                }
+            }
+        }
+        return sum;
+    }
+
+    /** Rows from smallest to largest amount; equal amounts stay in id order. */
+    public int[] sortedByCents() {
+        int size = size();
+        long[] cents = new long[size];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int c = 0; c < chunks.length; c++) {
+            System.arraycopy(chunks[c].cents, 0, cents, chunkStarts[c], chunks[c].cents.length);
+        }
+        for (long value : cents) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int[] order = new int[size];
+        int indexBits = 32 - Integer.numberOfLeadingZeros(size);
+        if (size > 0 && max - min >= 0 && (max - min) >>> (63 - indexBits) == 0) {
+            // Amount and row packed into one long, so a primitive sort orders by amount then row
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = (cents[i] - min) << indexBits | i;
+            }
+            Arrays.sort(packed);
+            long indexMask = (1L << indexBits) - 1;
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) (packed[i] & indexMask);
+            }
+            return order;
+        }
+        // Amounts too far apart to pack
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(order, (a, b) -> Long.compare(cents[a], cents[b]));
+        return order;
+    }
+
+    /**
+     * Stable merge sort of row positions without boxing them. Runs already in
+     * order are not merged again, so a nearly sorted {@code order} takes little
+     * more than one pass.
+     */
+    public static void sort(int[] order, RowComparator comparator) {
+        int[] buffer = order.clone();
+        mergeSort(buffer, order, 0, order.length, comparator);
+    }
+
+    /**
+     * This roster plus {@code player}, in id order.
+     *
+     * @throws IllegalArgumentException if a player with that id is already on it
+     */
+    public RosterColumns withInserted(Player player) {
+        int position = indexOfId(player.getId());
+        if (position >= 0) {
+            throw new IllegalArgumentException("Player " + player.getId() + " is already on the roster");
+        }
+        position = -position - 1;
+        long cents = player.getAmountCents();
+        if (chunks.length == 0) {
+            Chunk chunk = new Chunk(new long[] {player.getId()}, new long[] {cents}, new String[] {player.getName()},
+                    new boolean[] {player.isMember()});
+            return new RosterColumns(new Chunk[] {chunk}, cents);
+        }
+
+        // A new last row goes at the end of the last chunk
+        int c = position == size() ? chunks.length - 1 : chunkOf(position);
+        Chunk chunk = chunks[c];
+        int row = position - chunkStarts[c];
+        int length = chunk.ids.length + 1;
+        long[] ids = insert(chunk.ids, row, player.getId());
+        long[] amounts = insert(chunk.cents, row, cents);
+        String[] names = new String[length];
+        System.arraycopy(chunk.names, 0, names, 0, row);
+        names[row] = player.getName();
+        System.arraycopy(chunk.names, row, names, row + 1, length - row - 1);
+        boolean[] members = new boolean[length];
+        System.arraycopy(chunk.members, 0, members, 0, row);
+        members[row] = player.isMember();
+        System.arraycopy(chunk.members, row, members, row + 1, length - row - 1);
+
+        Chunk[] updated;
+        if (length <= 2 * CHUNK_SIZE) {
+            updated = chunks.clone();
+            updated[c] = new Chunk(ids, amounts, names, members);
+        } else {
+            int half = length / 2;
+            updated = new Chunk[chunks.length + 1];
+            System.arraycopy(chunks, 0, updated, 0, c);
+            updated[c] = new Chunk(Arrays.copyOfRange(ids, 0, half), Arrays.copyOfRange(amounts, 0, half),
+                    Arrays.copyOfRange(names, 0, half), Arrays.copyOfRange(members, 0, half));
+            updated[c + 1] = new Chunk(Arrays.copyOfRange(ids, half, length), Arrays.copyOfRange(amounts, half, length),
+                    Arrays.copyOfRange(names, half, length), Arrays.copyOfRange(members, half, length));
+            System.arraycopy(chunks, c + 1, updated, c + 2, chunks.length - c - 1);
+        }
+        return new RosterColumns(updated, totalCents + cents);
+    }
+
+    /** This roster with row {@code index} given a new name, amount and membership. */
+    public RosterColumns withReplaced(int index, String name, long cents, boolean member) {
+        int c = chunkOf(index);
+        Chunk chunk = chunks[c];
+        int row = index - chunkStarts[c];
+        long[] amounts = chunk.cents.clone();
+        String[] names = chunk.names.clone();
+        long delta = cents - amounts[row];
+        amounts[row] = cents;
+        names[row] = name;
+        // Ids don't change, so the chunk shares them, and the flags too unless this one changes
+        boolean[] members = chunk.members;
+        if (members[row] != member) {
+            members = members.clone();
+            members[row] = member;
+        }
+        Chunk[] updated = chunks.clone();
+        updated[c] = new Chunk(chunk.ids, amounts, names, members);
+        return new RosterColumns(updated, totalCents + delta);
+    }
+
+    /** This roster without row {@code index}. */
+    public RosterColumns withRemoved(int index) {
+        int c = chunkOf(index);
+        Chunk chunk = chunks[c];
+        int row = index - chunkStarts[c];
+        long removedCents = chunk.cents[row];
+        Chunk[] updated;
+        if (chunk.ids.length == 1) {
+            updated = new Chunk[chunks.length - 1];
+            System.arraycopy(chunks, 0, updated, 0, c);
+            System.arraycopy(chunks, c + 1, updated, c, chunks.length - c - 1);
+        } else {
+            String[] names = new String[chunk.names.length - 1];
+            System.arraycopy(chunk.names, 0, names, 0, row);
+            System.arraycopy(chunk.names, row + 1, names, row, names.length - row);
+            boolean[] members = new boolean[chunk.members.length - 1];
+            System.arraycopy(chunk.members, 0, members, 0, row);
+            System.arraycopy(chunk.members, row + 1, members, row, members.length - row);
+            updated = chunks.clone();
+            updated[c] = new Chunk(remove(chunk.ids, row), remove(chunk.cents, row), names, members);
+        }
+        return new RosterColumns(updated, totalCents - removedCents);
+    }
+
+    /**
+     * This roster and {@code other} together, in id order, in one pass.
+     *
+     * @throws IllegalArgumentException if a player is on both
+     */
+    public RosterColumns merged(RosterColumns other) {
+        int size = size() + other.size();
+        long[] ids = new long[size];
+        long[] cents = new long[size];
+        String[] names = new String[size];
+        boolean[] members = new boolean[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            boolean fromThis = j == other.size() || (i < size() && idAt(i) < other.idAt(j));
+            if (!fromThis && i < size() && idAt(i) == other.idAt(j)) {
+                throw new IllegalArgumentException("Player " + idAt(i) + " is on both rosters");
+            }
+            if (fromThis) {
+                ids[k] = idAt(i);
+                cents[k] = centsAt(i);
+                names[k] = nameAt(i);
+                members[k] = memberAt(i);
+                i++;
+            } else {
+                ids[k] = other.idAt(j);
+                cents[k] = other.centsAt(j);
+                names[k] = other.nameAt(j);
+                members[k] = other.memberAt(j);
+                j++;
+            }
+        }
+
+        Chunk[] merged = new Chunk[(size + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int c = 0; c < merged.length; c++) {
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(size, from + CHUNK_SIZE);
+            merged[c] = new Chunk(Arrays.copyOfRange(ids, from, to), Arrays.copyOfRange(cents, from, to),
+                    Arrays.copyOfRange(names, from, to), Arrays.copyOfRange(members, from, to));
+        }
+        return new RosterColumns(merged, totalCents + other.totalCents);
+    }
+
+    private static final class RowList extends AbstractList<Player> implements RandomAccess {
+        private final RosterColumns columns;
+        private final int[] rows;
+
+        RowList(RosterColumns columns, int[] rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public Player get(int index) {
+            return columns.get(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+
+    private int chunkOf(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        // The last chunk starting at or before index
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunkStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static long[] insert(long[] values, int index, long value) {
+        long[] result = new long[values.length + 1];
+        System.arraycopy(values, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(values, index, result, index + 1, values.length - index);
+        return result;
+    }
+
+    private static long[] remove(long[] values, int index) {
+        long[] result = new long[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    // Sorts source[from, to) into target; both start out holding the same values
+    private static void mergeSort(int[] source, int[] target, int from, int to, RowComparator comparator) {
+        if (to - from <= INSERTION_SORT_SIZE) {
+            for (int i = from + 1; i < to; i++) {
+                int value = target[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(target[j], value) > 0) {
+                    target[j + 1] = target[j];
+                    j--;
+                }
+                target[j + 1] = value;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(target, source, from, mid, comparator);
+        mergeSort(target, source, mid, to, comparator);
+        if (comparator.compare(source[mid - 1], source[mid]) <= 0) {
+            // Already in order
+            System.arraycopy(source, from, target, from, to - from);
+            return;
+        }
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comparator.compare(source[i], source[j]) <= 0)) {
+                target[k] = source[i++];
+            } else {
+                target[k] = source[j++];
+            }
+        }
+    }
+}
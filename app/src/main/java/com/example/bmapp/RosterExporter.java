@@ -0,0 +1,324 @@
+package com.example.bmapp;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exports the roster and recorded sessions as CSV or JSON.
+ *
+ * An export has two steps. {@link #snapshot} copies the rows to a private
+ * spool file inside one {@link PlayerStore#beginSnapshot snapshot}
+ * transaction, so the export reflects a single moment and the transaction
+ * only lasts as long as a local file copy. {@link #write} then formats the
+ * spool into the chosen document at whatever speed the destination allows,
+ * while the roster stays editable. Both steps handle one row at a time, so
+ * memory use is the same for ten players or a hundred thousand.
+ *
+ * A spool is a {@link RosterCodec} roster, empty when only sessions are
+ * exported, followed by tagged session rows and a terminator.
+ *
+ * The players CSV uses the {@code name,amount} layout the CSV import reads.
+ */
+class RosterExporter {
+
+    enum Kind {
+        PLAYERS_CSV, SESSIONS_CSV, ALL_JSON
+    }
+
+    interface ProgressListener {
+        void onProgress(long done, long total);
+    }
+
+    static final int PROGRESS_STEP = 256;
+    private static final int SNAPSHOT_PAGE_SIZE = 500;
+    private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte TAG_SESSION = 'S';
+    private static final byte TAG_END = 'E';
+
+    private RosterExporter() {
+    }
+
+    /**
+     * Copies what {@code kind} needs into {@code spool}. Returns the number of
+     * rows copied. Call off the main thread.
+     */
+    static long snapshot(PlayerStore playerStore, SessionLedger ledger, Kind kind, File spool) throws IOException {
+        boolean players = kind != Kind.SESSIONS_CSV;
+        boolean sessions = kind != Kind.PLAYERS_CSV;
+
+        playerStore.beginSnapshot();
+        try (SpoolWriter writer = new SpoolWriter(spool)) {
+            if (players) {
+                long afterId = 0;
+                while (true) {
+                    // Keyset pages; the transaction keeps them consistent with each other
+                    List<Player> page = playerStore.loadPage(afterId, SNAPSHOT_PAGE_SIZE);
+                    for (Player player : page) {
+                        writer.addPlayer(player.getId(), player.getName(), player.getAmountCents(),
+                                player.isMember());
+                        afterId = player.getId();
+                    }
+                    if (page.size() < SNAPSHOT_PAGE_SIZE) {
+                        break;
+                    }
+                }
+            }
+            if (sessions) {
+                ledger.forEachSession(writer::addSession);
+            }
+            return writer.getRowCount();
+        } finally {
+            playerStore.endSnapshot();
+        }
+    }
+
+    /**
+     * Formats a spool written by {@link #snapshot} into {@code out}.
+     *
+     * @throws CancellationException once {@code cancelled} is set
+     */
+    static void write(File spool, long totalRows, Kind kind, Writer out,
+                      ProgressListener listener, AtomicBoolean cancelled) throws IOException {
+        try (FileInputStream file = new FileInputStream(spool)) {
+            if (kind == Kind.ALL_JSON) {
+                writeJson(file, totalRows, out, listener, cancelled);
+            } else {
+                writeCsv(file, totalRows, kind, out, listener, cancelled);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeCsv(FileInputStream file, long totalRows, Kind kind, Writer out,
+                                 ProgressListener listener, AtomicBoolean cancelled) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        Calendar calendar = Calendar.getInstance();
+        out.write(kind == Kind.PLAYERS_CSV
+                ? "name,amount\n"
+                : "id,played_at,court_fee,shuttle_fee,members,non_members,member_share,non_member_share,total\n");
+
+        long[] done = {0};
+        RosterCodec.read(file.getChannel(), (id, name, cents, member) -> {
+            line.setLength(0);
+            appendCsvField(line, name);
+            line.append(',');
+            Money.appendPlain(line, cents);
+            line.append('\n');
+            out.append(line);
+            done[0] = onRowWritten(done[0], totalRows, listener, cancelled);
+        });
+
+        // The stream carries on from where the roster ended
+        DataInputStream in = sessionRows(file);
+        while (in.readByte() != TAG_END) {
+            line.setLength(0);
+            line.append(in.readLong()).append(',');
+            appendDateTime(line, calendar, in.readLong());
+            for (int i = 0; i < 2; i++) {
+                line.append(',');
+                Money.appendPlain(line, in.readLong());
+            }
+            line.append(',').append(in.readInt());
+            line.append(',').append(in.readInt());
+            for (int i = 0; i < 3; i++) {
+                line.append(',');
+                Money.appendPlain(line, in.readLong());
+            }
+            line.append('\n');
+            out.append(line);
+            done[0] = onRowWritten(done[0], totalRows, listener, cancelled);
+        }
+        listener.onProgress(totalRows, totalRows);
+    }
+
+    private static void writeJson(FileInputStream file, long totalRows, Writer out,
+                                  ProgressListener listener, AtomicBoolean cancelled) throws IOException {
+        StringBuilder amount = new StringBuilder(24);
+        Calendar calendar = Calendar.getInstance();
+        // Not closed: closing would close the caller's writer
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent(" ");
+        json.beginObject();
+        json.name("app").value("BMApp");
+        json.name("version").value(1);
+        json.name("exportedAt").value(System.currentTimeMillis());
+        json.name("players").beginArray();
+
+        long[] done = {0};
+        RosterCodec.read(file.getChannel(), (id, name, cents, member) -> {
+            json.beginObject();
+            json.name("id").value(id);
+            json.name("name").value(name);
+            json.name("amount").jsonValue(amountText(amount, cents));
+            json.endObject();
+            done[0] = onRowWritten(done[0], totalRows, listener, cancelled);
+        });
+        json.endArray().name("sessions").beginArray();
+
+        DataInputStream in = sessionRows(file);
+        while (in.readByte() != TAG_END) {
+            json.beginObject();
+            json.name("id").value(in.readLong());
+            amount.setLength(0);
+            appendDateTime(amount, calendar, in.readLong());
+            json.name("playedAt").value(amount.toString());
+            json.name("courtFee").jsonValue(amountText(amount, in.readLong()));
+            json.name("shuttleFee").jsonValue(amountText(amount, in.readLong()));
+            json.name("members").value(in.readInt());
+            json.name("nonMembers").value(in.readInt());
+            json.name("memberShare").jsonValue(amountText(amount, in.readLong()));
+            json.name("nonMemberShare").jsonValue(amountText(amount, in.readLong()));
+            json.name("total").jsonValue(amountText(amount, in.readLong()));
+            json.endObject();
+            done[0] = onRowWritten(done[0], totalRows, listener, cancelled);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        listener.onProgress(totalRows, totalRows);
+    }
+
+    // Not closed here: the caller closes the file
+    private static DataInputStream sessionRows(FileInputStream file) {
+        return new DataInputStream(new BufferedInputStream(file, SPOOL_BUFFER_SIZE));
+    }
+
+    private static long onRowWritten(long done, long totalRows, ProgressListener listener,
+                                     AtomicBoolean cancelled) {
+        done++;
+        if (done % PROGRESS_STEP == 0) {
+            if (cancelled.get()) {
+                throw new CancellationException();
+            }
+            listener.onProgress(done, totalRows);
+        }
+        return done;
+    }
+
+    private static String amountText(StringBuilder buffer, long cents) {
+        buffer.setLength(0);
+        Money.appendPlain(buffer, cents);
+        return buffer.toString();
+    }
+
+    // Local time as yyyy-MM-dd HH:mm
+    private static void appendDateTime(StringBuilder out, Calendar calendar, long time) {
+        calendar.setTimeInMillis(time);
+        out.append(calendar.get(Calendar.YEAR)).append('-');
+        appendTwoDigits(out, calendar.get(Calendar.MONTH) + 1);
+        out.append('-');
+        appendTwoDigits(out, calendar.get(Calendar.DAY_OF_MONTH));
+        out.append(' ');
+        appendTwoDigits(out, calendar.get(Calendar.HOUR_OF_DAY));
+        out.append(':');
+        appendTwoDigits(out, calendar.get(Calendar.MINUTE));
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        if (value < 10) {
+            out.append('0');
+        }
+        out.append(value);
+    }
+
+    static void appendCsvField(StringBuilder out, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /** Writes a spool: every player first, then every session. */
+    static final class SpoolWriter implements Closeable {
+        private final FileOutputStream file;
+        private final RosterCodec.Writer roster;
+        private DataOutputStream out;
+        private long rowCount;
+
+        SpoolWriter(File target) throws IOException {
+            file = new FileOutputStream(target);
+            try {
+                roster = new RosterCodec.Writer(file.getChannel());
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        long getRowCount() {
+            return rowCount;
+        }
+
+        void addPlayer(long id, String name, long amountCents, boolean member) throws IOException {
+            if (out != null) {
+                throw new IllegalStateException("Players go before sessions");
+            }
+            roster.add(id, name, amountCents, member);
+            rowCount++;
+        }
+
+        void addSession(long id, SessionLedger.Session session) throws IOException {
+            DataOutputStream out = sessionRows();
+            out.writeByte(TAG_SESSION);
+            out.writeLong(id);
+            out.writeLong(session.playedAt);
+            out.writeLong(session.courtFeeCents);
+            out.writeLong(session.shuttleFeeCents);
+            out.writeInt(session.numMembers);
+            out.writeInt(session.numNonMembers);
+            out.writeLong(session.memberShareCents);
+            out.writeLong(session.nonMemberShareCents);
+            out.writeLong(session.totalCents);
+            rowCount++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                DataOutputStream out = sessionRows();
+                out.writeByte(TAG_END);
+                out.flush();
+            } finally {
+                file.close();
+            }
+        }
+
+        // Ends the roster on the first call; the rows go on from where it ended
+        private DataOutputStream sessionRows() throws IOException {
+            if (out == null) {
+                roster.finish();
+                out = new DataOutputStream(new BufferedOutputStream(file, SPOOL_BUFFER_SIZE));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bmapp;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bounded undo and redo stacks of roster changes.
+ *
+ * A step holds only what its change needs to be reversed, such as the one
+ * player a delete removed, never a copy of the roster. Undoing a clear keeps
+ * the roster snapshot the clear replaced; snapshots are immutable, so that is
+ * a reference rather than a copy. Recording a new step drops everything that
+ * could be redone, and the oldest step is dropped once there are
+ * {@link #MAX_STEPS}.
+ *
+ * A step may carry an id, so that an offer to undo one particular change,
+ * such as a snackbar after a delete, can't undo a later one instead.
+ */
+final class RosterHistory {
+
+    static final int MAX_STEPS = 50;
+
+    static final class Step {
+        /** Names the step for {@link #undo(long)}; 0 if nothing refers to it. */
+        final long id;
+        final Runnable undo;
+        final Runnable redo;
+
+        Step(long id, Runnable undo, Runnable redo) {
+            this.id = id;
+            this.undo = undo;
+            this.redo = redo;
+        }
+    }
+
+    private final ArrayDeque<Step> undoSteps = new ArrayDeque<>();
+    private final ArrayDeque<Step> redoSteps = new ArrayDeque<>();
+
+    void record(Runnable undo, Runnable redo) {
+        record(0, undo, redo);
+    }
+
+    void record(long id, Runnable undo, Runnable redo) {
+        undoSteps.push(new Step(id, undo, redo));
+        if (undoSteps.size() > MAX_STEPS) {
+            undoSteps.removeLast();
+        }
+        redoSteps.clear();
+    }
+
+    boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /** Reverses the latest step. Returns false if there is nothing to undo. */
+    boolean undo() {
+        Step step = undoSteps.poll();
+        if (step == null) {
+            return false;
+        }
+        step.undo.run();
+        redoSteps.push(step);
+        return true;
+    }
+
+    /**
+     * Reverses the latest step if it is step {@code id}. Returns false if
+     * another change came since, or the step was undone or dropped already.
+     */
+    boolean undo(long id) {
+        Step step = undoSteps.peek();
+        if (step == null || step.id != id) {
+            return false;
+        }
+        return undo();
+    }
+
+    /** Repeats the latest undone step. Returns false if there is nothing to redo. */
+    boolean redo() {
+        Step step = redoSteps.poll();
+        if (step == null) {
+            return false;
+        }
+        step.redo.run();
+        undoSteps.push(step);
+        return true;
+    }
+
+    void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+    }
+}
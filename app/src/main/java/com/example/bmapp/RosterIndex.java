@@ -0,0 +1,324 @@
+package com.example.bmapp;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Search and sort over one roster snapshot, for the filter on the players screen.
+ *
+ * Names are matched by word prefix. Every word of every name goes into one
+ * sorted array, so the words starting with what was typed are found with a
+ * binary search and a short scan. A query of several words finds players
+ * with a word starting with each, so "ni pe" finds "Nimal Perera".
+ *
+ * Name order compares {@link CollationKey}s worked out once per name, so
+ * Sinhala and English names sort as people expect without a {@link Collator}
+ * call per comparison. Both orders are kept as permutations of the roster;
+ * a query marks the players that match and reads them off in the order asked
+ * for. An index rebuilt after an edit starts from the previous one, so only
+ * the names that changed are collated and split into words, and the sorts
+ * start out almost in order.
+ *
+ * Built and queried off the main thread, one at a time, since a
+ * {@link Collator} is not thread-safe. Never modified once built.
+ */
+public final class RosterIndex {
+
+    public enum Sort {
+        NAME_ASCENDING, NAME_DESCENDING, AMOUNT_ASCENDING, AMOUNT_DESCENDING
+    }
+
+    // How many players or words are visited between checks for a newer query
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final RosterColumns players;
+    // The roster's ids and names, copied out once for rebuilding from this index
+    private final long[] ids;
+    private final String[] names;
+    private final Collator collator;
+    private final Map<String, CollationKey> keysByName;
+    // Roster positions in name order and in amount order, both ascending
+    private final int[] byName;
+    private final int[] byAmount;
+    // Every word of every name, folded and sorted, with the roster position it came from
+    private final String[] words;
+    private final int[] wordOwners;
+
+    private RosterIndex(RosterColumns players, long[] ids, String[] names, Collator collator,
+                        Map<String, CollationKey> keysByName, int[] byName, int[] byAmount,
+                        String[] words, int[] wordOwners) {
+        this.players = players;
+        this.ids = ids;
+        this.names = names;
+        this.collator = collator;
+        this.keysByName = keysByName;
+        this.byName = byName;
+        this.byAmount = byAmount;
+        this.words = words;
+        this.wordOwners = wordOwners;
+    }
+
+    /** The collator used for name order: Sinhala rules, ignoring case. */
+    public static Collator newCollator() {
+        Collator collator = Collator.getInstance(new Locale("si", "LK"));
+        collator.setStrength(Collator.SECONDARY);
+        return collator;
+    }
+
+    /**
+     * Indexes {@code players}. When {@code previous} was built with the same
+     * collator, its collation keys, words and orders are reused for players
+     * whose names are unchanged, so an edit costs little more than a copy.
+     */
+    public static RosterIndex build(RosterColumns players, Collator collator, RosterIndex previous) {
+        if (previous != null && previous.collator != collator) {
+            previous = null;
+        }
+        int size = players.size();
+        long[] ids = new long[size];
+        String[] names = new String[size];
+        long[] cents = new long[size];
+        players.forEachRow((index, id, name, amount) -> {
+            ids[index] = id;
+            names[index] = name;
+            cents[index] = amount;
+        });
+
+        // Where each previous player is now, or -1 if gone
+        int[] moved = previous != null ? match(previous.ids, ids) : new int[0];
+        boolean[] sameName = new boolean[size];
+        for (int i = 0; i < moved.length; i++) {
+            if (moved[i] >= 0) {
+                sameName[moved[i]] = names[moved[i]].equals(previous.names[i]);
+            }
+        }
+
+        Map<String, CollationKey> cachedKeys = previous != null ? previous.keysByName : Collections.emptyMap();
+        Map<String, CollationKey> keysByName = new HashMap<>(size * 4 / 3 + 1);
+        CollationKey[] keys = new CollationKey[size];
+        int wordCount = 0;
+        for (int i = 0; i < size; i++) {
+            String name = names[i];
+            CollationKey key = keysByName.get(name);
+            if (key == null) {
+                key = cachedKeys.get(name);
+                if (key == null) {
+                    key = collator.getCollationKey(name);
+                }
+                keysByName.put(name, key);
+            }
+            keys[i] = key;
+            if (!sameName[i]) {
+                wordCount += countWords(name);
+            }
+        }
+
+        // Starting from the previous order makes each sort close to a single pass
+        int[] byName = seed(previous != null ? previous.byName : null, moved, size);
+        RosterColumns.sort(byName, (a, b) -> keys[a].compareTo(keys[b]));
+        int[] nameRank = new int[size];
+        for (int i = 0; i < size; i++) {
+            nameRank[byName[i]] = i;
+        }
+        // Equal amounts stay in name order
+        int[] byAmount = seed(previous != null ? previous.byAmount : null, moved, size);
+        RosterColumns.sort(byAmount, (a, b) -> cents[a] != cents[b]
+                ? Long.compare(cents[a], cents[b]) : Integer.compare(nameRank[a], nameRank[b]));
+
+        // Words of unchanged names come over in their sorted order, then the words of new names
+        int keptWords = 0;
+        if (previous != null) {
+            for (int owner : previous.wordOwners) {
+                if (moved[owner] >= 0 && sameName[moved[owner]]) {
+                    keptWords++;
+                }
+            }
+        }
+        String[] unsortedWords = new String[keptWords + wordCount];
+        int[] unsortedOwners = new int[keptWords + wordCount];
+        int next = 0;
+        if (previous != null) {
+            for (int i = 0; i < previous.words.length; i++) {
+                int owner = moved[previous.wordOwners[i]];
+                if (owner >= 0 && sameName[owner]) {
+                    unsortedWords[next] = previous.words[i];
+                    unsortedOwners[next] = owner;
+                    next++;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (sameName[i]) {
+                continue;
+            }
+            String folded = fold(names[i]);
+            int start = -1;
+            for (int c = 0; c <= folded.length(); c++) {
+                boolean space = c == folded.length() || Character.isWhitespace(folded.charAt(c));
+                if (!space && start < 0) {
+                    start = c;
+                } else if (space && start >= 0) {
+                    unsortedWords[next] = folded.substring(start, c);
+                    unsortedOwners[next] = i;
+                    next++;
+                    start = -1;
+                }
+            }
+        }
+        int[] wordOrder = sequence(unsortedWords.length);
+        RosterColumns.sort(wordOrder, (a, b) -> unsortedWords[a].compareTo(unsortedWords[b]));
+        String[] words = new String[unsortedWords.length];
+        int[] wordOwners = new int[unsortedWords.length];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = unsortedWords[wordOrder[i]];
+            wordOwners[i] = unsortedOwners[wordOrder[i]];
+        }
+
+        return new RosterIndex(players, ids, names, collator, keysByName, byName, byAmount, words, wordOwners);
+    }
+
+    /** The snapshot this index was built from. */
+    public RosterColumns getPlayers() {
+        return players;
+    }
+
+    /**
+     * The players matching {@code query}, in {@code sort} order. An empty
+     * query matches everyone.
+     *
+     * @throws CancellationException if {@code cancelled} is set meanwhile
+     */
+    public List<Player> query(String query, Sort sort, AtomicBoolean cancelled) {
+        String[] queryWords = fold(query).trim().split("\\s+");
+        int size = players.size();
+        int[] matched = null;
+        int wanted = 0;
+        if (!queryWords[0].isEmpty()) {
+            // matched[p] counts the query words player p has passed so far, in order
+            matched = new int[size];
+            wanted = queryWords.length;
+            for (int w = 0; w < queryWords.length; w++) {
+                String prefix = queryWords[w];
+                for (int i = lowerBound(prefix); i < words.length && words[i].startsWith(prefix); i++) {
+                    int owner = wordOwners[i];
+                    if (matched[owner] == w) {
+                        matched[owner] = w + 1;
+                    }
+                    checkCancelled(i, cancelled);
+                }
+            }
+        }
+
+        int[] order = sort == Sort.NAME_ASCENDING || sort == Sort.NAME_DESCENDING ? byName : byAmount;
+        boolean descending = sort == Sort.NAME_DESCENDING || sort == Sort.AMOUNT_DESCENDING;
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int position = order[descending ? size - 1 - i : i];
+            if (matched == null || matched[position] == wanted) {
+                result[count++] = position;
+            }
+            checkCancelled(i, cancelled);
+        }
+        // Players are made as the list is read, so only rows on screen or being diffed cost an object
+        return players.rows(count == size ? result : Arrays.copyOf(result, count));
+    }
+
+    // First word not before prefix; words starting with it follow on from there
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void checkCancelled(int step, AtomicBoolean cancelled) {
+        if (step % CANCEL_CHECK_INTERVAL == 0 && cancelled.get()) {
+            throw new CancellationException();
+        }
+    }
+
+    // Sinhala has no case; this folds Latin letters, accented ones included
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static int countWords(String name) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < name.length(); i++) {
+            boolean space = Character.isWhitespace(name.charAt(i));
+            if (!space && !inWord) {
+                count++;
+            }
+            inWord = !space;
+        }
+        return count;
+    }
+
+    // For each player in before, their position in after, or -1; a merge by id
+    private static int[] match(long[] before, long[] after) {
+        int[] moved = new int[before.length];
+        Arrays.fill(moved, -1);
+        int i = 0;
+        int j = 0;
+        while (i < before.length && j < after.length) {
+            long beforeId = before[i];
+            long afterId = after[j];
+            if (beforeId == afterId) {
+                moved[i++] = j++;
+            } else if (beforeId < afterId) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return moved;
+    }
+
+    // The previous order carried over to new positions, with players not in it at the end
+    private static int[] seed(int[] previousOrder, int[] moved, int size) {
+        if (previousOrder == null) {
+            return sequence(size);
+        }
+        int[] order = new int[size];
+        boolean[] placed = new boolean[size];
+        int next = 0;
+        for (int old : previousOrder) {
+            int now = moved[old];
+            if (now >= 0) {
+                order[next++] = now;
+                placed[now] = true;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (!placed[i]) {
+                order[next++] = i;
+            }
+        }
+        return order;
+    }
+
+    private static int[] sequence(int size) {
+        int[] sequence = new int[size];
+        for (int i = 0; i < size; i++) {
+            sequence[i] = i;
+        }
+        return sequence;
+    }
+}
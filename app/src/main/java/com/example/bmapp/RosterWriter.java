@@ -0,0 +1,479 @@
+package com.example.bmapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The roster's one writer, behind {@link PlayerRepository}.
+ *
+ * Every change, including the first load and undo, runs in turn on a single
+ * writer thread, so changes never interleave and need no locks. Each change
+ * makes a new immutable {@link RosterColumns} and publishes it through a
+ * volatile field; any thread may read the latest snapshot and keep it for as
+ * long as it likes. The name index is a concurrent map for the same reason.
+ *
+ * Store writes are queued on the writer thread as changes are made and
+ * written together in one transaction once the changes queued before them
+ * are done, so a burst of edits or a whole import costs a single commit.
+ * Snapshots are announced through the given executor, and if several are
+ * made before it runs only the latest is announced. If a change can't be
+ * written, the roster is read again from the store, so memory never holds
+ * what the next run would not see, and the failure is announced the same way.
+ */
+final class RosterWriter {
+
+    /** Where the roster is kept. Only used on the writer thread. */
+    interface Store {
+        /** Up to {@code limit} players with an id past {@code afterId}, in id order. */
+        List<Player> loadPage(long afterId, int limit);
+
+        /** The highest id ever stored, counting players since deleted; 0 if there were none. */
+        long getMaxId();
+
+        void insertPlayer(Player player);
+
+        void insertPlayers(List<Player> players);
+
+        void updatePlayer(Player player);
+
+        void deletePlayer(long playerId);
+
+        void clearPlayers();
+
+        /** Runs {@code writes}, which call the methods above, as one transaction. */
+        void runInTransaction(Runnable writes);
+    }
+
+    interface Callback {
+        /** The roster changed; {@code players} is the latest snapshot. */
+        void onPublished(RosterColumns players);
+
+        /**
+         * A change could not be written. It is gone from memory too, undo
+         * history is dropped, and the roster read back is published.
+         */
+        void onWriteFailed(RuntimeException e);
+    }
+
+    private static final int FIRST_PAGE_SIZE = 50;
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final Store store;
+    private final Executor notifier;
+    private final Callback callback;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean loadStarted = new AtomicBoolean();
+    private final AtomicBoolean announcePending = new AtomicBoolean();
+    private final AtomicLong lastStepId = new AtomicLong();
+
+    // Read from any thread, changed only on the writer thread
+    private volatile RosterColumns players = RosterColumns.empty();
+    private volatile boolean loaded;
+    private volatile long maxId;
+    private volatile boolean canUndo;
+    private volatile boolean canRedo;
+    private final NameIndex names = new NameIndex();
+
+    // Writer thread only
+    private final RosterHistory history = new RosterHistory();
+    private final List<Runnable> pendingWrites = new ArrayList<>();
+
+    RosterWriter(Store store, Executor notifier, Callback callback) {
+        this.store = store;
+        this.notifier = notifier;
+        this.callback = callback;
+    }
+
+    /** Starts reading the store if nobody has yet. Changes made meanwhile wait for it. */
+    void load() {
+        if (loadStarted.compareAndSet(false, true)) {
+            writer.execute(this::readStore);
+        }
+    }
+
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /** The latest roster in id order; never modified. */
+    RosterColumns getPlayers() {
+        return players;
+    }
+
+    /**
+     * The id a player added now would most likely get. Ids are handed out on
+     * the writer thread, so this is a hint rather than a reservation.
+     */
+    long nextId() {
+        return maxId + 1;
+    }
+
+    boolean canUndo() {
+        return canUndo;
+    }
+
+    boolean canRedo() {
+        return canRedo;
+    }
+
+    boolean isNameTaken(String name, long excludeId) {
+        return names.isTaken(name, excludeId);
+    }
+
+    long findIdByName(String name) {
+        return names.idOf(name);
+    }
+
+    Set<String> copyNameKeys() {
+        return names.copyKeys();
+    }
+
+    /**
+     * Adds a player with the next free id, unless the name was taken
+     * meanwhile; then {@code onNameTaken} is run through the notifier.
+     */
+    void add(String name, long amountCents, boolean member, Runnable onNameTaken) {
+        writer.execute(() -> {
+            Player player = new Player(maxId + 1, name, amountCents, member);
+            if (applyInsert(player)) {
+                record(() -> applyDelete(player.getId()), () -> applyInsert(player));
+            } else {
+                notifier.execute(onNameTaken);
+            }
+        });
+    }
+
+    /**
+     * Replaces the player with {@code player}'s id and runs {@code onUpdated}
+     * through the notifier. If the name was taken meanwhile, nothing changes
+     * and {@code onNameTaken} runs instead; if the player was deleted
+     * meanwhile, neither runs.
+     */
+    void update(Player player, Runnable onUpdated, Runnable onNameTaken) {
+        writer.execute(() -> {
+            if (players.indexOfId(player.getId()) < 0) {
+                return;
+            }
+            Player old = applyUpdate(player);
+            if (old != null) {
+                record(() -> applyUpdate(old), () -> applyUpdate(player));
+                notifier.execute(onUpdated);
+            } else {
+                notifier.execute(onNameTaken);
+            }
+        });
+    }
+
+    /** Returns the id of the undo step for this delete; see {@link #undo(long)}. */
+    long delete(long playerId) {
+        long stepId = lastStepId.incrementAndGet();
+        writer.execute(() -> {
+            Player removed = applyDelete(playerId);
+            if (removed != null) {
+                history.record(stepId, () -> applyInsert(removed), () -> applyDelete(playerId));
+                publishHistory();
+            }
+        });
+        return stepId;
+    }
+
+    /** Returns the id of the undo step for this clear; see {@link #undo(long)}. */
+    long clear() {
+        long stepId = lastStepId.incrementAndGet();
+        writer.execute(() -> {
+            // The snapshot is never modified, so keeping it for undo costs nothing
+            RosterColumns cleared = players;
+            applyClear();
+            history.record(stepId, () -> applyRestore(cleared), this::applyClear);
+            publishHistory();
+        });
+        return stepId;
+    }
+
+    /**
+     * Adds players read from elsewhere, such as a CSV import. Each keeps its
+     * id if that is past every id in use and otherwise gets the next free one,
+     * so ids stay in order. Players whose names were taken meanwhile are
+     * skipped. This can't be undone, and earlier changes can no longer be
+     * undone either. Blocks until the players are in memory, not until they
+     * are saved. Call off the main thread.
+     *
+     * @return how many players were added
+     */
+    int addAll(List<Player> batch) throws InterruptedException {
+        try {
+            return writer.submit(() -> applyAddAll(batch)).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    void undo() {
+        writer.execute(() -> {
+            history.undo();
+            publishHistory();
+        });
+    }
+
+    /** Undoes step {@code stepId} if it is still the latest change, and otherwise does nothing. */
+    void undo(long stepId) {
+        writer.execute(() -> {
+            if (history.undo(stepId)) {
+                publishHistory();
+            }
+        });
+    }
+
+    void redo() {
+        writer.execute(() -> {
+            history.redo();
+            publishHistory();
+        });
+    }
+
+    /**
+     * Once the changes made so far are saved, runs {@code rewrite} in one
+     * transaction to replace what the store holds, such as a restore from
+     * backup, then reads the roster again. Undo history is dropped. Blocks
+     * until done; if {@code rewrite} fails, the store and the roster are left
+     * as they were. Call off the main thread.
+     */
+    void replaceStored(Runnable rewrite) throws InterruptedException {
+        // Whatever load() would read is read here instead
+        loadStarted.set(true);
+        try {
+            writer.submit(() -> {
+                flush();
+                store.runInTransaction(rewrite);
+                names.clear();
+                history.clear();
+                canUndo = false;
+                canRedo = false;
+                readStore();
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Blocks until every change made so far is in memory and in the store. Call off the main thread. */
+    void awaitIdle() throws InterruptedException {
+        try {
+            writer.submit(this::flush).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Finishes the changes made so far, then stops the writer. For tests. */
+    void shutdown() throws InterruptedException {
+        writer.execute(this::flush);
+        writer.shutdown();
+        writer.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void readStore() {
+        long start = PerfMetrics.begin();
+        // The store imports any older saved roster the first time it is opened
+        List<Player> firstPage = store.loadPage(0, FIRST_PAGE_SIZE);
+        // A partial roster is only worth showing while there is none yet
+        if (!loaded && firstPage.size() == FIRST_PAGE_SIZE) {
+            publish(RosterColumns.of(firstPage));
+        }
+
+        List<Player> all = new ArrayList<>(firstPage);
+        if (firstPage.size() == FIRST_PAGE_SIZE) {
+            List<Player> page;
+            do {
+                page = store.loadPage(all.get(all.size() - 1).getId(), LOAD_PAGE_SIZE);
+                all.addAll(page);
+            } while (page.size() == LOAD_PAGE_SIZE);
+        }
+        for (Player player : all) {
+            names.put(player.getName(), player.getId());
+        }
+        // Ids of deleted players are never given out again, as the ledger may still hold their dues
+        long lastId = all.isEmpty() ? 0 : all.get(all.size() - 1).getId();
+        maxId = Math.max(maxId, Math.max(lastId, store.getMaxId()));
+
+        // The player objects read from the store are garbage once copied into columns
+        loaded = true;
+        publish(RosterColumns.of(all));
+        PerfMetrics.end(PerfMetrics.LOAD_PLAYERS, start);
+    }
+
+    private void record(Runnable undo, Runnable redo) {
+        history.record(undo, redo);
+        publishHistory();
+    }
+
+    // Returns false if the id is already in, or another player has the name
+    private boolean applyInsert(Player player) {
+        if (players.indexOfId(player.getId()) >= 0 || names.isTaken(player.getName(), 0)) {
+            return false;
+        }
+        // A player brought back by undo goes back to its place in id order
+        names.put(player.getName(), player.getId());
+        maxId = Math.max(maxId, player.getId());
+        publish(players.withInserted(player));
+
+        persist(() -> store.insertPlayer(player));
+        return true;
+    }
+
+    // Returns the player that was replaced, or null if there is none with that id or the name is taken
+    private Player applyUpdate(Player player) {
+        int index = players.indexOfId(player.getId());
+        if (index < 0 || isNameTaken(player.getName(), player.getId())) {
+            return null;
+        }
+        Player old = players.get(index);
+        names.remove(old.getName());
+        names.put(player.getName(), player.getId());
+        publish(players.withReplaced(index, player.getName(), player.getAmountCents(), player.isMember()));
+
+        persist(() -> store.updatePlayer(player));
+        return old;
+    }
+
+    // Returns the removed player, or null if there is none with that id
+    private Player applyDelete(long playerId) {
+        int index = players.indexOfId(playerId);
+        if (index < 0) {
+            return null;
+        }
+        Player removed = players.get(index);
+        names.remove(removed.getName());
+        publish(players.withRemoved(index));
+
+        persist(() -> store.deletePlayer(playerId));
+        return removed;
+    }
+
+    // Returns how many were added; players whose names are taken are left out
+    private int applyAddAll(List<Player> batch) {
+        List<Player> added = new ArrayList<>(batch.size());
+        long lastId = maxId;
+        for (Player player : batch) {
+            if (names.isTaken(player.getName(), 0)) {
+                continue;
+            }
+            long id = player.getId() > lastId ? player.getId() : lastId + 1;
+            Player kept = id == player.getId() ? player : new Player(id, player.getName(), player.getAmountCents(),
+                    player.isMember());
+            names.put(player.getName(), id);
+            added.add(kept);
+            lastId = id;
+        }
+        maxId = lastId;
+        // Undoing an older step could bring back a name an imported player now uses
+        history.clear();
+        canUndo = false;
+        canRedo = false;
+        publish(players.merged(RosterColumns.of(added)));
+
+        persist(() -> store.insertPlayers(added));
+        return added.size();
+    }
+
+    private void applyClear() {
+        names.clear();
+        publish(RosterColumns.empty());
+
+        persist(store::clearPlayers);
+    }
+
+    // Undoes a clear: one merge in id order, one notification and one store write
+    private void applyRestore(RosterColumns cleared) {
+        for (int i = 0; i < cleared.size(); i++) {
+            names.put(cleared.nameAt(i), cleared.idAt(i));
+        }
+        publish(players.merged(cleared));
+
+        persist(() -> store.insertPlayers(cleared));
+    }
+
+    private void publishHistory() {
+        canUndo = history.canUndo();
+        canRedo = history.canRedo();
+        // Listeners read the undo state when told of a new roster
+        publish(players);
+    }
+
+    private void publish(RosterColumns snapshot) {
+        players = snapshot;
+        // One announcement at a time; it reads the field when it runs, so it never delivers a stale roster
+        if (announcePending.compareAndSet(false, true)) {
+            notifier.execute(() -> {
+                announcePending.set(false);
+                callback.onPublished(players);
+            });
+        }
+    }
+
+    private void persist(Runnable write) {
+        if (pendingWrites.isEmpty()) {
+            // Queued behind the changes already waiting, which then share its transaction
+            writer.execute(this::flush);
+        }
+        pendingWrites.add(write);
+    }
+
+    private void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        List<Runnable> writes = new ArrayList<>(pendingWrites);
+        pendingWrites.clear();
+        long start = PerfMetrics.begin();
+        try {
+            store.runInTransaction(() -> {
+                for (Runnable write : writes) {
+                    write.run();
+                }
+            });
+        } catch (RuntimeException e) {
+            // The transaction was rolled back; write one at a time so one bad change loses only itself
+            RuntimeException failure = null;
+            for (Runnable write : writes) {
+                try {
+                    store.runInTransaction(write);
+                } catch (RuntimeException writeFailure) {
+                    failure = writeFailure;
+                }
+            }
+            if (failure != null) {
+                rollBack(failure);
+            }
+        }
+        PerfMetrics.end(PerfMetrics.SAVE_PLAYER, start);
+    }
+
+    // Every other change made so far is in the store, so reading it back drops just what failed
+    private void rollBack(RuntimeException failure) {
+        // Undo steps may lead back to what failed, or rely on it
+        history.clear();
+        canUndo = false;
+        canRedo = false;
+        try {
+            names.clear();
+            readStore();
+        } catch (RuntimeException readFailure) {
+            // Keep what is in memory rather than an empty roster
+            failure.addSuppressed(readFailure);
+            for (int i = 0; i < players.size(); i++) {
+                names.put(players.nameAt(i), players.idAt(i));
+            }
+            publish(players);
+        }
+        notifier.execute(() -> callback.onWriteFailed(failure));
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.bmapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only ledger of calculated sessions, kept in the player store's
+ * database.
+ *
+ * Appending a session also folds it into running per-player balances and into
+ * one row per week and per month, in the same transaction. Balance and period
+ * queries read those rows directly, so their cost depends on how many periods
+ * are asked for, never on how many sessions were recorded.
+ */
+public class SessionLedger {
+
+    public static final String PERIOD_WEEK = "week";
+    public static final String PERIOD_MONTH = "month";
+
+    private static final String TABLE_SESSIONS = "sessions";
+    private static final String TABLE_ATTENDEES = "session_attendees";
+    private static final String TABLE_BALANCES = "player_balances";
+    private static final String TABLE_PERIODS = "period_totals";
+
+    private static final int READ_PAGE_SIZE = 500;
+
+    private static SessionLedger instance;
+
+    private final PlayerStore playerStore;
+
+    /** One calculated session. Amounts are in cents. */
+    public static class Session {
+        public final long playedAt;
+        public final long courtFeeCents;
+        public final long shuttleFeeCents;
+        public final int numMembers;
+        public final int numNonMembers;
+        public final long memberShareCents;
+        public final long nonMemberShareCents;
+        public final long totalCents;
+
+        public Session(long playedAt, long courtFeeCents, long shuttleFeeCents,
+                       int numMembers, int numNonMembers, FeeCalculator.Result result) {
+            this.playedAt = playedAt;
+            this.courtFeeCents = courtFeeCents;
+            this.shuttleFeeCents = shuttleFeeCents;
+            this.numMembers = numMembers;
+            this.numNonMembers = numNonMembers;
+            this.memberShareCents = result.memberShareCents;
+            this.nonMemberShareCents = result.nonMemberShareCents;
+            this.totalCents = result.totalCents;
+        }
+
+        Session(long playedAt, long courtFeeCents, long shuttleFeeCents, int numMembers, int numNonMembers,
+                long memberShareCents, long nonMemberShareCents, long totalCents) {
+            this.playedAt = playedAt;
+            this.courtFeeCents = courtFeeCents;
+            this.shuttleFeeCents = shuttleFeeCents;
+            this.numMembers = numMembers;
+            this.numNonMembers = numNonMembers;
+            this.memberShareCents = memberShareCents;
+            this.nonMemberShareCents = nonMemberShareCents;
+            this.totalCents = totalCents;
+        }
+    }
+
+    interface SessionVisitor {
+        void visit(long sessionId, Session session) throws IOException;
+    }
+
+    interface RecordVisitor {
+        void visit(long sessionId, Session session, List<Attendee> attendees) throws IOException;
+    }
+
+    /** A named player at a session and what they owe for it. */
+    public static class Attendee {
+        public final long playerId;
+        public final boolean member;
+        public final long owedCents;
+
+        public Attendee(long playerId, boolean member, long owedCents) {
+            this.playerId = playerId;
+            this.member = member;
+            this.owedCents = owedCents;
+        }
+    }
+
+    /** Totals for one week or month. */
+    public static class PeriodTotal {
+        public final String periodType;
+        public final long periodKey;
+        public final int sessions;
+        public final int players;
+        public final long courtFeeCents;
+        public final long shuttleFeeCents;
+        public final long totalCents;
+
+        PeriodTotal(String periodType, long periodKey, int sessions, int players,
+                    long courtFeeCents, long shuttleFeeCents, long totalCents) {
+            this.periodType = periodType;
+            this.periodKey = periodKey;
+            this.sessions = sessions;
+            this.players = players;
+            this.courtFeeCents = courtFeeCents;
+            this.shuttleFeeCents = shuttleFeeCents;
+            this.totalCents = totalCents;
+        }
+    }
+
+    public static synchronized SessionLedger getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionLedger(PlayerStore.getInstance(context));
+        }
+        return instance;
+    }
+
+    private SessionLedger(PlayerStore playerStore) {
+        this.playerStore = playerStore;
+    }
+
+    /** Called by {@link PlayerStore} when creating or upgrading its database. */
+    static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SESSIONS + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "played_at INTEGER NOT NULL, "
+                + "court_fee_cents INTEGER NOT NULL, "
+                + "shuttle_fee_cents INTEGER NOT NULL, "
+                + "num_members INTEGER NOT NULL, "
+                + "num_non_members INTEGER NOT NULL, "
+                + "member_share_cents INTEGER NOT NULL, "
+                + "non_member_share_cents INTEGER NOT NULL, "
+                + "total_cents INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_sessions_played_at ON " + TABLE_SESSIONS + " (played_at)");
+        db.execSQL("CREATE TABLE " + TABLE_ATTENDEES + " ("
+                + "session_id INTEGER NOT NULL, "
+                + "player_id INTEGER NOT NULL, "
+                + "is_member INTEGER NOT NULL, "
+                + "owed_cents INTEGER NOT NULL, "
+                + "PRIMARY KEY (session_id, player_id))");
+        db.execSQL("CREATE TABLE " + TABLE_BALANCES + " ("
+                + "player_id INTEGER PRIMARY KEY, "
+                + "owed_cents INTEGER NOT NULL, "
+                + "sessions INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE " + TABLE_PERIODS + " ("
+                + "period_type TEXT NOT NULL, "
+                + "period_key INTEGER NOT NULL, "
+                + "sessions INTEGER NOT NULL, "
+                + "players INTEGER NOT NULL, "
+                + "court_fee_cents INTEGER NOT NULL, "
+                + "shuttle_fee_cents INTEGER NOT NULL, "
+                + "total_cents INTEGER NOT NULL, "
+                + "PRIMARY KEY (period_type, period_key))");
+    }
+
+    /**
+     * Deletes the balances and attendance of every player whose id is not
+     * returned by {@code playerIdsQuery}, so a later player can't inherit them.
+     * Called by {@link PlayerStore} when it opens its database.
+     */
+    static void deletePlayersNotIn(SQLiteDatabase db, String playerIdsQuery) {
+        String removed = "player_id NOT IN (" + playerIdsQuery + ")";
+        db.delete(TABLE_BALANCES, removed, null);
+        db.delete(TABLE_ATTENDEES, removed, null);
+    }
+
+    /**
+     * Appends a session and updates balances and period totals with it.
+     * Returns the new session id. Call off the main thread.
+     */
+    public long recordSession(Session session, List<Attendee> attendees) {
+        SQLiteDatabase db = playerStore.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long sessionId = insertSession(db, 0, session, attendees);
+            db.setTransactionSuccessful();
+            return sessionId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Hands every session to {@code visitor} in id order, reading in keyset
+     * pages so only one page is held at a time. Call off the main thread.
+     */
+    void forEachSession(SessionVisitor visitor) throws IOException {
+        long afterId = 0;
+        int read;
+        do {
+            read = 0;
+            try (Cursor cursor = playerStore.getReadableDatabase().rawQuery(
+                    "SELECT id, played_at, court_fee_cents, shuttle_fee_cents, num_members, num_non_members, "
+                            + "member_share_cents, non_member_share_cents, total_cents FROM " + TABLE_SESSIONS
+                            + " WHERE id > ? ORDER BY id LIMIT " + READ_PAGE_SIZE,
+                    new String[] {String.valueOf(afterId)})) {
+                while (cursor.moveToNext()) {
+                    afterId = cursor.getLong(0);
+                    visitor.visit(afterId, new Session(cursor.getLong(1), cursor.getLong(2), cursor.getLong(3),
+                            cursor.getInt(4), cursor.getInt(5), cursor.getLong(6), cursor.getLong(7),
+                            cursor.getLong(8)));
+                    read++;
+                }
+            }
+        } while (read == READ_PAGE_SIZE);
+    }
+
+    /**
+     * Hands every session after {@code afterId} to {@code visitor} in id
+     * order, with its attendees. Reads a page of sessions, then the attendees
+     * of that page in one query. Call off the main thread.
+     */
+    void forEachSessionAfter(long afterId, RecordVisitor visitor) throws IOException {
+        SQLiteDatabase db = playerStore.getReadableDatabase();
+        List<Long> ids = new ArrayList<>(READ_PAGE_SIZE);
+        List<Session> sessions = new ArrayList<>(READ_PAGE_SIZE);
+        do {
+            ids.clear();
+            sessions.clear();
+            try (Cursor cursor = db.rawQuery(
+                    "SELECT id, played_at, court_fee_cents, shuttle_fee_cents, num_members, num_non_members, "
+                            + "member_share_cents, non_member_share_cents, total_cents FROM " + TABLE_SESSIONS
+                            + " WHERE id > ? ORDER BY id LIMIT " + READ_PAGE_SIZE,
+                    new String[] {String.valueOf(afterId)})) {
+                while (cursor.moveToNext()) {
+                    ids.add(cursor.getLong(0));
+                    sessions.add(new Session(cursor.getLong(1), cursor.getLong(2), cursor.getLong(3),
+                            cursor.getInt(4), cursor.getInt(5), cursor.getLong(6), cursor.getLong(7),
+                            cursor.getLong(8)));
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            long lastId = ids.get(ids.size() - 1);
+            try (Cursor cursor = db.rawQuery(
+                    "SELECT session_id, player_id, is_member, owed_cents FROM " + TABLE_ATTENDEES
+                            + " WHERE session_id > ? AND session_id <= ? ORDER BY session_id",
+                    new String[] {String.valueOf(afterId), String.valueOf(lastId)})) {
+                boolean more = cursor.moveToNext();
+                for (int i = 0; i < ids.size(); i++) {
+                    long sessionId = ids.get(i);
+                    List<Attendee> attendees = new ArrayList<>();
+                    while (more && cursor.getLong(0) == sessionId) {
+                        attendees.add(new Attendee(cursor.getLong(1), cursor.getInt(2) != 0, cursor.getLong(3)));
+                        more = cursor.moveToNext();
+                    }
+                    visitor.visit(sessionId, sessions.get(i), attendees);
+                }
+            }
+            afterId = lastId;
+        } while (ids.size() == READ_PAGE_SIZE);
+    }
+
+    /**
+     * Replaces every recorded session with {@code sessions}, keeping their
+     * ids, and works out balances and period totals again from them. Runs
+     * inside the caller's transaction, such as a restore from backup.
+     */
+    void replaceAll(List<RosterBackup.SessionRecord> sessions) {
+        SQLiteDatabase db = playerStore.getWritableDatabase();
+        db.delete(TABLE_SESSIONS, null, null);
+        db.delete(TABLE_ATTENDEES, null, null);
+        db.delete(TABLE_BALANCES, null, null);
+        db.delete(TABLE_PERIODS, null, null);
+        for (RosterBackup.SessionRecord record : sessions) {
+            insertSession(db, record.sessionId, record.session, record.attendees);
+        }
+    }
+
+    /** {owed cents, sessions} for a player across every recorded session; zeros if they attended none. */
+    public long[] getBalance(long playerId) {
+        try (Cursor cursor = playerStore.getReadableDatabase().rawQuery(
+                "SELECT owed_cents, sessions FROM " + TABLE_BALANCES + " WHERE player_id = ?",
+                new String[] {String.valueOf(playerId)})) {
+            return cursor.moveToFirst() ? new long[] {cursor.getLong(0), cursor.getLong(1)} : new long[2];
+        }
+    }
+
+    /**
+     * Totals for every week or month whose key falls in
+     * {@code [fromKey, toKey]}, oldest first. Periods without sessions are left out.
+     */
+    public List<PeriodTotal> getPeriodTotals(String periodType, long fromKey, long toKey) {
+        try (Cursor cursor = playerStore.getReadableDatabase().rawQuery(
+                "SELECT period_key, sessions, players, court_fee_cents, shuttle_fee_cents, total_cents FROM "
+                        + TABLE_PERIODS + " WHERE period_type = ? AND period_key BETWEEN ? AND ? ORDER BY period_key",
+                new String[] {periodType, String.valueOf(fromKey), String.valueOf(toKey)})) {
+            if (cursor.getCount() == 0) {
+                return Collections.emptyList();
+            }
+            List<PeriodTotal> totals = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                totals.add(new PeriodTotal(periodType, cursor.getLong(0), cursor.getInt(1), cursor.getInt(2),
+                        cursor.getLong(3), cursor.getLong(4), cursor.getLong(5)));
+            }
+            return totals;
+        }
+    }
+
+    /** Totals for the period containing {@code time}, or null if it has no sessions. */
+    public PeriodTotal getPeriodTotal(String periodType, long time) {
+        long key = PERIOD_WEEK.equals(periodType) ? weekKey(time) : monthKey(time);
+        List<PeriodTotal> totals = getPeriodTotals(periodType, key, key);
+        return totals.isEmpty() ? null : totals.get(0);
+    }
+
+    /** Local-time day number (days since 1970-01-01) of the Monday starting the week of {@code time}. */
+    public static long weekKey(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
+        long local = calendar.getTimeInMillis() + calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+        return Math.floorDiv(local, 24L * 60 * 60 * 1000);
+    }
+
+    /** Months since January 1970 for the local month of {@code time}. */
+    public static long monthKey(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        return (calendar.get(Calendar.YEAR) - 1970L) * 12 + calendar.get(Calendar.MONTH);
+    }
+
+    // Inserts a session with its attendees and folds it into balances and periods; id 0 picks a new id
+    private static long insertSession(SQLiteDatabase db, long id, Session session, List<Attendee> attendees) {
+        ContentValues values = new ContentValues();
+        if (id != 0) {
+            values.put("id", id);
+        }
+        values.put("played_at", session.playedAt);
+        values.put("court_fee_cents", session.courtFeeCents);
+        values.put("shuttle_fee_cents", session.shuttleFeeCents);
+        values.put("num_members", session.numMembers);
+        values.put("num_non_members", session.numNonMembers);
+        values.put("member_share_cents", session.memberShareCents);
+        values.put("non_member_share_cents", session.nonMemberShareCents);
+        values.put("total_cents", session.totalCents);
+        long sessionId = db.insertOrThrow(TABLE_SESSIONS, null, values);
+
+        for (Attendee attendee : attendees) {
+            ContentValues attendeeValues = new ContentValues();
+            attendeeValues.put("session_id", sessionId);
+            attendeeValues.put("player_id", attendee.playerId);
+            attendeeValues.put("is_member", attendee.member ? 1 : 0);
+            attendeeValues.put("owed_cents", attendee.owedCents);
+            db.insertOrThrow(TABLE_ATTENDEES, null, attendeeValues);
+
+            addToBalance(db, attendee.playerId, attendee.owedCents);
+        }
+
+        int players = session.numMembers + session.numNonMembers;
+        addToPeriod(db, PERIOD_WEEK, weekKey(session.playedAt), session, players);
+        addToPeriod(db, PERIOD_MONTH, monthKey(session.playedAt), session, players);
+        return sessionId;
+    }
+
+    // UPSERT needs SQLite 3.24 (API 30), so rows are updated in place and inserted when missing
+    private static void addToBalance(SQLiteDatabase db, long playerId, long owedCents) {
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_BALANCES
+                + " SET owed_cents = owed_cents + ?, sessions = sessions + 1 WHERE player_id = ?")) {
+            update.bindLong(1, owedCents);
+            update.bindLong(2, playerId);
+            if (update.executeUpdateDelete() > 0) {
+                return;
+            }
+        }
+        ContentValues values = new ContentValues();
+        values.put("player_id", playerId);
+        values.put("owed_cents", owedCents);
+        values.put("sessions", 1);
+        db.insertOrThrow(TABLE_BALANCES, null, values);
+    }
+
+    private static void addToPeriod(SQLiteDatabase db, String periodType, long periodKey,
+                                    Session session, int players) {
+        try (SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_PERIODS
+                + " SET sessions = sessions + 1, players = players + ?,"
+                + " court_fee_cents = court_fee_cents + ?, shuttle_fee_cents = shuttle_fee_cents + ?,"
+                + " total_cents = total_cents + ? WHERE period_type = ? AND period_key = ?")) {
+            update.bindLong(1, players);
+            update.bindLong(2, session.courtFeeCents);
+            update.bindLong(3, session.shuttleFeeCents);
+            update.bindLong(4, session.totalCents);
+            update.bindString(5, periodType);
+            update.bindLong(6, periodKey);
+            if (update.executeUpdateDelete() > 0) {
+                return;
+            }
+        }
+        ContentValues values = new ContentValues();
+        values.put("period_type", periodType);
+        values.put("period_key", periodKey);
+        values.put("sessions", 1);
+        values.put("players", players);
+        values.put("court_fee_cents", session.courtFeeCents);
+        values.put("shuttle_fee_cents", session.shuttleFeeCents);
+        values.put("total_cents", session.totalCents);
+        db.insertOrThrow(TABLE_PERIODS, null, values);
+    }
+}
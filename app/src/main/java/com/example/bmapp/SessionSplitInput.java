@@ -0,0 +1,201 @@
+package com.example.bmapp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the courts and attendance typed into the split dialog.
+ *
+ * One court booking per line, times then court fee and shuttle fee in rupees:
+ * <pre>
+ *   18:00-20:00 2400 400
+ * </pre>
+ * One attendance per line, the player's name, times, and {@code m} for a member:
+ * <pre>
+ *   Kasun 18:00-19:30 m
+ *   Nimal Perera 18:30-20:00
+ * </pre>
+ * Blank lines are skipped. A player who leaves and comes back gets one line per visit.
+ */
+final class SessionSplitInput {
+
+    interface NameLookup {
+        /** The id of the player called {@code name}, or 0 if there is none. */
+        long idOf(String name);
+    }
+
+    static final class LineError {
+        final boolean attendance;
+        final int lineNumber;
+        final int messageRes;
+
+        LineError(boolean attendance, int lineNumber, int messageRes) {
+            this.attendance = attendance;
+            this.lineNumber = lineNumber;
+            this.messageRes = messageRes;
+        }
+    }
+
+    final List<SessionSplitter.Slot> slots = new ArrayList<>();
+    final List<SessionSplitter.Attendance> attendances = new ArrayList<>();
+    final List<LineError> errors = new ArrayList<>();
+
+    private SessionSplitInput() {
+    }
+
+    static SessionSplitInput parse(String courts, String attendance, NameLookup names) {
+        SessionSplitInput input = new SessionSplitInput();
+        String[] courtLines = courts.split("\n");
+        for (int i = 0; i < courtLines.length; i++) {
+            String line = courtLines[i].trim();
+            if (!line.isEmpty()) {
+                input.parseSlot(line, i + 1);
+            }
+        }
+        String[] attendanceLines = attendance.split("\n");
+        for (int i = 0; i < attendanceLines.length; i++) {
+            String line = attendanceLines[i].trim();
+            if (!line.isEmpty()) {
+                input.parseAttendance(line, i + 1, names);
+            }
+        }
+        if (input.errors.isEmpty() && (input.slots.isEmpty() || input.attendances.isEmpty())) {
+            input.errors.add(new LineError(!input.slots.isEmpty(), 0, R.string.error_split_empty));
+        }
+        return input;
+    }
+
+    /**
+     * The night as one ledger session played at {@code playedAt}. Shares vary
+     * with time on court, so the session keeps each group's average share;
+     * what each player owes is in {@link #attendees}.
+     */
+    SessionLedger.Session toSession(SessionSplitter.Result split, long playedAt) {
+        long courtFeeCents = 0;
+        long shuttleFeeCents = 0;
+        for (SessionSplitter.Slot slot : slots) {
+            courtFeeCents += slot.courtFeeCents;
+            shuttleFeeCents += slot.shuttleFeeCents;
+        }
+        Set<Long> memberIds = memberIds();
+        int members = 0;
+        long memberCents = 0;
+        long nonMemberCents = 0;
+        for (int i = 0; i < split.playerIds.length; i++) {
+            if (memberIds.contains(split.playerIds[i])) {
+                members++;
+                memberCents += split.shareCents[i];
+            } else {
+                nonMemberCents += split.shareCents[i];
+            }
+        }
+        int nonMembers = split.playerIds.length - members;
+        return new SessionLedger.Session(playedAt, courtFeeCents, shuttleFeeCents, members, nonMembers,
+                members > 0 ? Math.floorDiv(memberCents, members) : 0,
+                nonMembers > 0 ? Math.floorDiv(nonMemberCents, nonMembers) : 0,
+                split.totalCents);
+    }
+
+    /** Every player in {@code split} with the share they owe for the night. */
+    List<SessionLedger.Attendee> attendees(SessionSplitter.Result split) {
+        Set<Long> memberIds = memberIds();
+        List<SessionLedger.Attendee> attendees = new ArrayList<>(split.playerIds.length);
+        for (int i = 0; i < split.playerIds.length; i++) {
+            attendees.add(new SessionLedger.Attendee(split.playerIds[i], memberIds.contains(split.playerIds[i]),
+                    split.shareCents[i]));
+        }
+        return attendees;
+    }
+
+    // A player counts as a member if any of their visits is marked as one
+    private Set<Long> memberIds() {
+        Set<Long> ids = new HashSet<>();
+        for (SessionSplitter.Attendance attendance : attendances) {
+            if (attendance.member) {
+                ids.add(attendance.playerId);
+            }
+        }
+        return ids;
+    }
+
+    private void parseSlot(String line, int lineNumber) {
+        String[] parts = line.split("\\s+");
+        int[] range = parts.length == 3 ? parseRange(parts[0]) : null;
+        if (range == null) {
+            errors.add(new LineError(false, lineNumber, R.string.error_split_court_line));
+            return;
+        }
+        long courtFee = parseFee(parts[1]);
+        long shuttleFee = parseFee(parts[2]);
+        if (courtFee < 0 || shuttleFee < 0) {
+            errors.add(new LineError(false, lineNumber, R.string.error_invalid_amount));
+            return;
+        }
+        slots.add(new SessionSplitter.Slot(range[0], range[1], courtFee, shuttleFee));
+    }
+
+    private void parseAttendance(String line, int lineNumber, NameLookup names) {
+        // The name may contain spaces, so read from the end
+        String[] parts = line.split("\\s+");
+        int last = parts.length - 1;
+        boolean member = last > 1 && parts[last].equalsIgnoreCase("m");
+        if (member) {
+            last--;
+        }
+        int[] range = last >= 1 ? parseRange(parts[last]) : null;
+        if (range == null) {
+            errors.add(new LineError(true, lineNumber, R.string.error_split_attendance_line));
+            return;
+        }
+        StringBuilder name = new StringBuilder(parts[0]);
+        for (int i = 1; i < last; i++) {
+            name.append(' ').append(parts[i]);
+        }
+        long playerId = names.idOf(name.toString());
+        if (playerId == 0) {
+            errors.add(new LineError(true, lineNumber, R.string.error_split_unknown_player));
+            return;
+        }
+        attendances.add(new SessionSplitter.Attendance(playerId, member, range[0], range[1]));
+    }
+
+    // "18:00-19:30" as minutes since midnight; null if malformed or not ending after it starts
+    private static int[] parseRange(String text) {
+        int dash = text.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        int start = parseTime(text.substring(0, dash));
+        int end = parseTime(text.substring(dash + 1));
+        if (start < 0 || end <= start) {
+            return null;
+        }
+        return new int[] {start, end};
+    }
+
+    // "18:00" or "18.00" as minutes since midnight, -1 if malformed
+    private static int parseTime(String text) {
+        int separator = Math.max(text.indexOf(':'), text.indexOf('.'));
+        if (separator < 1 || separator != text.length() - 3) {
+            return -1;
+        }
+        try {
+            int hours = Integer.parseInt(text.substring(0, separator));
+            int minutes = Integer.parseInt(text.substring(separator + 1));
+            if (hours < 0 || hours > 24 || minutes < 0 || minutes > 59 || (hours == 24 && minutes > 0)) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Rupees as cents, -1 if malformed or negative
+    private static long parseFee(String text) {
+        long cents = Money.parseCents(text);
+        return cents == Money.INVALID || cents < 0 ? -1 : cents;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.bmapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a night of several court bookings between players who stay for
+ * different lengths of time.
+ *
+ * Each {@link Slot} is one booking on one court; its court and shuttle fees
+ * are spread evenly over its minutes, and overlapping slots (several courts
+ * at once) add up. Each {@link Attendance} is one player being there from one
+ * minute to another; a player who leaves and comes back has several.
+ *
+ * Every stretch of time between two slot or attendance boundaries is split
+ * like a {@link FeeCalculator} session between whoever is there: non-members
+ * pay a full per-head share of court plus shuttle, and members, who prepaid
+ * the court, get the court money non-members paid back as a discount. The
+ * stretches are visited with one sweep over the sorted boundaries. Running
+ * per-head totals for members and non-members are kept, and each attendance
+ * is charged the difference between the totals at its end and at its start.
+ * That is O((slots + attendances) log(slots + attendances)), however many
+ * players overlap.
+ *
+ * Shares are accumulated in double precision and then rounded to whole cents
+ * by largest remainder, so they always add up exactly to
+ * {@link Result#totalCents}. Court time with nobody on it is not charged to
+ * anyone; it is reported as {@link Result#unattendedCents}.
+ */
+public final class SessionSplitter {
+
+    /** One booking on one court. Minutes are counted from a fixed point such as midnight, and are never negative. */
+    public static final class Slot {
+        public final int startMinute;
+        public final int endMinute;
+        public final long courtFeeCents;
+        public final long shuttleFeeCents;
+
+        public Slot(int startMinute, int endMinute, long courtFeeCents, long shuttleFeeCents) {
+            if (startMinute < 0 || endMinute <= startMinute) {
+                throw new IllegalArgumentException("A slot must end after it starts");
+            }
+            if (courtFeeCents < 0 || shuttleFeeCents < 0) {
+                throw new IllegalArgumentException("Fees cannot be negative");
+            }
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+            this.courtFeeCents = courtFeeCents;
+            this.shuttleFeeCents = shuttleFeeCents;
+        }
+    }
+
+    /** One player being present from {@code startMinute} until {@code endMinute}. */
+    public static final class Attendance {
+        public final long playerId;
+        public final boolean member;
+        public final int startMinute;
+        public final int endMinute;
+
+        public Attendance(long playerId, boolean member, int startMinute, int endMinute) {
+            if (startMinute < 0 || endMinute <= startMinute) {
+                throw new IllegalArgumentException("An attendance must end after it starts");
+            }
+            this.playerId = playerId;
+            this.member = member;
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+        }
+    }
+
+    public static final class Result {
+        /** Every player who attended, in order of their first attendance. */
+        public final long[] playerIds;
+        /** What each player in {@link #playerIds} pays; negative for a member whose discount is larger. */
+        public final long[] shareCents;
+        /** Sum of {@link #shareCents}. */
+        public final long totalCents;
+        /** Fees for booked time when nobody was on court. */
+        public final long unattendedCents;
+
+        Result(long[] playerIds, long[] shareCents, long totalCents, long unattendedCents) {
+            this.playerIds = playerIds;
+            this.shareCents = shareCents;
+            this.totalCents = totalCents;
+            this.unattendedCents = unattendedCents;
+        }
+    }
+
+    // Event kinds, in the low bits of an encoded event
+    private static final int SLOT_START = 0;
+    private static final int SLOT_END = 1;
+    private static final int ATTEND_START = 2;
+    private static final int ATTEND_END = 3;
+    private static final int KIND_BITS = 2;
+    private static final int INDEX_BITS = 30;
+
+    private SessionSplitter() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if there are more than 2^30 slots or attendances
+     */
+    public static Result split(List<Slot> slots, List<Attendance> attendances) {
+        if (slots.size() >= 1 << INDEX_BITS || attendances.size() >= 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("Too many slots or attendances");
+        }
+
+        // Each event is packed into a long as minute | index | kind, so one primitive sort orders them by time
+        long[] events = new long[2 * (slots.size() + attendances.size())];
+        int count = 0;
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            events[count++] = encode(slot.startMinute, i, SLOT_START);
+            events[count++] = encode(slot.endMinute, i, SLOT_END);
+        }
+        for (int i = 0; i < attendances.size(); i++) {
+            Attendance attendance = attendances.get(i);
+            events[count++] = encode(attendance.startMinute, i, ATTEND_START);
+            events[count++] = encode(attendance.endMinute, i, ATTEND_END);
+        }
+        Arrays.sort(events);
+
+        // Running per-minute fees of the slots in progress, and who is on court
+        double courtRate = 0;
+        double shuttleRate = 0;
+        int slotsInProgress = 0;
+        int members = 0;
+        int nonMembers = 0;
+        // Running per-head totals since the start of the night
+        double memberShareSoFar = 0;
+        double nonMemberShareSoFar = 0;
+        double collected = 0;
+        double unattended = 0;
+
+        double[] shareAtStart = new double[attendances.size()];
+        double[] attendanceShare = new double[attendances.size()];
+        long previousTime = events.length > 0 ? decodeTime(events[0]) : 0;
+
+        for (long event : events) {
+            long time = decodeTime(event);
+            long minutes = time - previousTime;
+            if (minutes > 0) {
+                double court = courtRate * minutes;
+                double shuttle = shuttleRate * minutes;
+                int present = members + nonMembers;
+                if (present == 0) {
+                    unattended += court + shuttle;
+                } else {
+                    // The same model as FeeCalculator, for this stretch only
+                    double nonMemberShare = (court + shuttle) / present;
+                    double total = members > 0 ? shuttle : court + shuttle;
+                    nonMemberShareSoFar += nonMemberShare;
+                    if (members > 0) {
+                        memberShareSoFar += (total - nonMemberShare * nonMembers) / members;
+                    }
+                    collected += total;
+                }
+                previousTime = time;
+            }
+
+            int index = decodeIndex(event);
+            switch (decodeKind(event)) {
+                case SLOT_START: {
+                    Slot slot = slots.get(index);
+                    int length = slot.endMinute - slot.startMinute;
+                    courtRate += (double) slot.courtFeeCents / length;
+                    shuttleRate += (double) slot.shuttleFeeCents / length;
+                    slotsInProgress++;
+                    break;
+                }
+                case SLOT_END: {
+                    Slot slot = slots.get(index);
+                    int length = slot.endMinute - slot.startMinute;
+                    courtRate -= (double) slot.courtFeeCents / length;
+                    shuttleRate -= (double) slot.shuttleFeeCents / length;
+                    // Cleared outright once nothing is booked, so rounding error can't build up
+                    if (--slotsInProgress == 0) {
+                        courtRate = 0;
+                        shuttleRate = 0;
+                    }
+                    break;
+                }
+                case ATTEND_START:
+                    if (attendances.get(index).member) {
+                        members++;
+                        shareAtStart[index] = memberShareSoFar;
+                    } else {
+                        nonMembers++;
+                        shareAtStart[index] = nonMemberShareSoFar;
+                    }
+                    break;
+                default:
+                    if (attendances.get(index).member) {
+                        members--;
+                        attendanceShare[index] = memberShareSoFar - shareAtStart[index];
+                    } else {
+                        nonMembers--;
+                        attendanceShare[index] = nonMemberShareSoFar - shareAtStart[index];
+                    }
+                    break;
+            }
+        }
+
+        // Gather each player's attendances
+        Map<Long, Integer> playerIndex = new HashMap<>();
+        List<Long> playerIds = new ArrayList<>();
+        double[] playerShare = new double[attendances.size()];
+        for (int i = 0; i < attendances.size(); i++) {
+            Long id = attendances.get(i).playerId;
+            Integer player = playerIndex.get(id);
+            if (player == null) {
+                player = playerIds.size();
+                playerIndex.put(id, player);
+                playerIds.add(id);
+            }
+            playerShare[player] += attendanceShare[i];
+        }
+
+        int players = playerIds.size();
+        long totalCents = Math.round(collected);
+        long[] ids = new long[players];
+        long[] shareCents = new long[players];
+        for (int i = 0; i < players; i++) {
+            ids[i] = playerIds.get(i);
+        }
+        apportion(playerShare, players, totalCents, shareCents);
+        return new Result(ids, shareCents, totalCents, Math.round(unattended));
+    }
+
+    /**
+     * Rounds {@code shares} to whole cents that add up to {@code totalCents}:
+     * every share is rounded down and the cents left over go one each to the
+     * largest fractions, earlier players first on ties.
+     */
+    static void apportion(double[] shares, int count, long totalCents, long[] out) {
+        long assigned = 0;
+        for (int i = 0; i < count; i++) {
+            out[i] = (long) Math.floor(shares[i]);
+            assigned += out[i];
+        }
+        long leftover = totalCents - assigned;
+        if (count == 0 || leftover == 0) {
+            return;
+        }
+
+        // Sort players by how much rounding down took from them, largest first
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(shares[b] - Math.floor(shares[b]), shares[a] - Math.floor(shares[a])));
+        // Floating point error can make the leftover slightly out of range; spread it round-robin either way
+        long step = leftover > 0 ? 1 : -1;
+        for (long i = 0; i != leftover; i += step) {
+            int player = step > 0 ? order[(int) (i % count)] : order[count - 1 - (int) (-i % count)];
+            out[player] += step;
+        }
+    }
+
+    private static long encode(int minute, int index, int kind) {
+        // Minutes are never negative, so the packed value is too and sorts as a signed long
+        return ((long) minute << (INDEX_BITS + KIND_BITS)) | ((long) index << KIND_BITS) | kind;
+    }
+
+    private static long decodeTime(long event) {
+        return event >>> (INDEX_BITS + KIND_BITS);
+    }
+
+    private static int decodeIndex(long event) {
+        return (int) ((event >>> KIND_BITS) & ((1L << INDEX_BITS) - 1));
+    }
+
+    private static int decodeKind(long event) {
+        return (int) (event & ((1 << KIND_BITS) - 1));
+    }
+}
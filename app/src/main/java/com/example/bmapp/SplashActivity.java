@@ -1,9 +1,12 @@
 package com.example.bmapp;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.widget.ImageView;
@@ -11,14 +14,27 @@ import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class SplashActivity extends AppCompatActivity {
 
-    private static final int SPLASH_DURATION = 3000; // 3 seconds
+    private static final String TAG = "SplashActivity";
+
+    private static final int MIN_SPLASH_DURATION = 600; // keep the animation from flashing by
+    private static final int MAX_SPLASH_DURATION = 3000; // never wait longer than the old fixed delay
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private long splashStart;
+    private boolean navigated;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_splash);
+        StartupTimings.mark("splash_created");
+        splashStart = SystemClock.elapsedRealtime();
 
         // Initialize views
         ImageView appIcon = findViewById(R.id.iv_app_icon);
@@ -33,12 +49,80 @@ public class SplashActivity extends AppCompatActivity {
         appTitle.startAnimation(fadeIn);
         subtitle.startAnimation(fadeIn);
 
-        // Navigate to MainActivity after delay
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            Intent intent = new Intent(SplashActivity.this, MainActivity.class);
-            startActivity(intent);
-            overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-            finish();
-        }, SPLASH_DURATION);
+        // Do the real startup work while the animation runs
+        runStartupWork();
+
+        // Go ahead anyway if the work is slow
+        mainHandler.postDelayed(this::navigateToMain, MAX_SPLASH_DURATION);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void runStartupWork() {
+        Context appContext = getApplicationContext();
+        Runnable[] tasks = {
+                // Load the main screen's saved fields
+                () -> AppSettings.getInstance(appContext),
+                // Open the player store, importing a legacy roster on first run, and read the roster in
+                () -> {
+                    PlayerRepository repository = PlayerRepository.getInstance(appContext);
+                    repository.load();
+                    try {
+                        // The load runs on the roster's writer thread; wait so the timing covers it
+                        repository.awaitPendingWrites();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                },
+                // Load and exercise the fee calculator before the first calculation
+                () -> FeeCalculator.calculate(100_00, 50_00, 3, 1, new FeeCalculator.Result()),
+        };
+        String[] taskNames = {"main_prefs", "player_store", "fee_calculator"};
+
+        AtomicInteger remaining = new AtomicInteger(tasks.length);
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.length);
+        for (int i = 0; i < tasks.length; i++) {
+            Runnable task = tasks[i];
+            String taskName = taskNames[i];
+            executor.execute(() -> {
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // The screen that needs this will retry and report it; don't hold up startup
+                    Log.e(TAG, "Startup task " + taskName + " failed", e);
+                } finally {
+                    StartupTimings.recordDuration(taskName, SystemClock.elapsedRealtime() - start);
+                    if (remaining.decrementAndGet() == 0) {
+                        mainHandler.post(this::onStartupWorkDone);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    private void onStartupWorkDone() {
+        StartupTimings.mark("startup_work_done");
+        long shown = SystemClock.elapsedRealtime() - splashStart;
+        mainHandler.postDelayed(this::navigateToMain, Math.max(0, MIN_SPLASH_DURATION - shown));
+    }
+
+    private void navigateToMain() {
+        if (navigated || isFinishing()) {
+            return;
+        }
+        navigated = true;
+        mainHandler.removeCallbacksAndMessages(null);
+        StartupTimings.mark("splash_finished");
+
+        Intent intent = new Intent(SplashActivity.this, MainActivity.class);
+        startActivity(intent);
+        overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
+        finish();
     }
 }
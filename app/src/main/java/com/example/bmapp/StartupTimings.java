@@ -0,0 +1,59 @@
+package com.example.bmapp;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records how long cold start takes, phase by phase. Marks are measured from
+ * process start; task durations are measured by the task itself. The summary
+ * is logged under the {@code StartupTimings} tag once the first interactive
+ * frame of {@link MainActivity} is up, next to the system "Fully drawn" line
+ * from {@code reportFullyDrawn()}.
+ */
+public final class StartupTimings {
+
+    private static final String TAG = "StartupTimings";
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+    private static final Map<String, Long> durations = new LinkedHashMap<>();
+    private static boolean reported;
+
+    private StartupTimings() {
+    }
+
+    /** Records the time since process start at which {@code phase} was reached. */
+    public static synchronized void mark(String phase) {
+        marks.put(phase, SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+    }
+
+    /** Records how long a startup task took. */
+    public static synchronized void recordDuration(String task, long durationMs) {
+        durations.put(task, durationMs);
+    }
+
+    public static synchronized Long getMark(String phase) {
+        return marks.get(phase);
+    }
+
+    /** Logs the summary once per process. */
+    public static synchronized void report() {
+        if (reported) {
+            return;
+        }
+        reported = true;
+
+        StringBuilder sb = new StringBuilder("Cold start:");
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        sb.append(" | tasks:");
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue()).append("ms");
+        }
+        Log.i(TAG, sb.toString());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bmapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings in binary files as an i32 byte length followed by UTF-8.
+ *
+ * {@link DataOutput#writeUTF} only takes strings up to 65535 encoded bytes,
+ * and nothing limits how long a name can be, so one long name imported from
+ * a CSV would make every file it goes into fail to write.
+ */
+final class Utf8Strings {
+
+    private Utf8Strings() {
+    }
+
+    static void write(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
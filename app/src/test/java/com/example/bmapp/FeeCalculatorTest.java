@@ -0,0 +1,132 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the cents-based fee split.
+ */
+public class FeeCalculatorTest {
+
+    private final FeeCalculator.Result result = new FeeCalculator.Result();
+
+    @Test
+    public void evenSplit_matchesOldFormula() {
+        // Court 1000.00, shuttle 200.00, 3 members, 1 non-member
+        FeeCalculator.calculate(100_000, 20_000, 3, 1, result);
+
+        // Non-member: (1000 + 200) / 4 = 300.00
+        assertEquals(30_000, result.nonMemberShareCents);
+        assertEquals(0, result.nonMembersPayingExtraCent);
+        // Member: 200/4 - 1000/3 + 1000/4 = -33.33..., so the rest of the shuttle fee is split
+        assertEquals(20_000, result.totalCents);
+        assertSharesAddUp(3, 1);
+    }
+
+    @Test
+    public void unevenSplit_distributesRemainderCents() {
+        FeeCalculator.calculate(0, 1_000, 3, 0, result);
+
+        assertEquals(333, result.memberShareCents);
+        assertEquals(1, result.membersPayingExtraCent);
+        assertSharesAddUp(3, 0);
+    }
+
+    @Test
+    public void noMembers_nonMembersPayCourtToo() {
+        // Used to divide by zero
+        FeeCalculator.calculate(90_000, 10_000, 0, 4, result);
+
+        assertEquals(100_000, result.totalCents);
+        assertEquals(25_000, result.nonMemberShareCents);
+        assertEquals(0, result.memberShareCents);
+        assertSharesAddUp(0, 4);
+    }
+
+    @Test
+    public void noNonMembers_membersSplitShuttleOnly() {
+        FeeCalculator.calculate(90_000, 10_000, 4, 0, result);
+
+        assertEquals(2_500, result.memberShareCents);
+        assertEquals(0, result.nonMemberShareCents);
+        assertSharesAddUp(4, 0);
+    }
+
+    @Test
+    public void randomSessions_sharesAlwaysAddUpAndStayWithinACentOfOldFormula() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 100_000; i++) {
+            long court = random.nextInt(5_000_000);
+            long shuttle = random.nextInt(500_000);
+            int members = 1 + random.nextInt(40);
+            int nonMembers = random.nextInt(40);
+
+            FeeCalculator.calculate(court, shuttle, members, nonMembers, result);
+            assertSharesAddUp(members, nonMembers);
+
+            int total = members + nonMembers;
+            double oldNonMember = (court + shuttle) / (double) total;
+            double oldMember = shuttle / (double) total - court / (double) members + court / (double) total;
+            if (nonMembers > 0) {
+                assertEquals(oldNonMember, result.nonMemberShareCents, 1.0);
+            }
+            assertEquals(oldMember, result.memberShareCents, 1.0);
+        }
+    }
+
+    @Test
+    public void batch_matchesSingleCalls() {
+        int count = 1_000;
+        long[] court = new long[count];
+        long[] shuttle = new long[count];
+        int[] members = new int[count];
+        int[] nonMembers = new int[count];
+        FeeCalculator.Result[] out = new FeeCalculator.Result[count];
+        Random random = new Random(99);
+        for (int i = 0; i < count; i++) {
+            court[i] = random.nextInt(1_000_000);
+            shuttle[i] = random.nextInt(100_000);
+            members[i] = random.nextInt(20);
+            nonMembers[i] = 1 + random.nextInt(20);
+            out[i] = new FeeCalculator.Result();
+        }
+
+        FeeCalculator.calculateBatch(count, court, shuttle, members, nonMembers, out);
+
+        for (int i = 0; i < count; i++) {
+            FeeCalculator.calculate(court[i], shuttle[i], members[i], nonMembers[i], result);
+            assertEquals(result.memberShareCents, out[i].memberShareCents);
+            assertEquals(result.membersPayingExtraCent, out[i].membersPayingExtraCent);
+            assertEquals(result.nonMemberShareCents, out[i].nonMemberShareCents);
+            assertEquals(result.nonMembersPayingExtraCent, out[i].nonMembersPayingExtraCent);
+            assertEquals(result.totalCents, out[i].totalCents);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noPlayers_isRejected() {
+        FeeCalculator.calculate(1_000, 1_000, 0, 0, result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFee_isRejected() {
+        FeeCalculator.calculate(-1, 1_000, 1, 1, result);
+    }
+
+    @Test
+    public void divideHalfUp_roundsHalvesAwayFromZero() {
+        assertEquals(3, FeeCalculator.divideHalfUp(5, 2));
+        assertEquals(2, FeeCalculator.divideHalfUp(7, 4));
+        assertEquals(-3, FeeCalculator.divideHalfUp(-5, 2));
+        assertEquals(0, FeeCalculator.divideHalfUp(1, 3));
+    }
+
+    private void assertSharesAddUp(int members, int nonMembers) {
+        long sum = result.memberShareCents * members + result.membersPayingExtraCent
+                + result.nonMemberShareCents * nonMembers + result.nonMembersPayingExtraCent;
+        assertEquals(result.totalCents, sum);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for reading the main screen's fee fields as they are typed.
+ */
+public class FeeInputTest {
+
+    @Test
+    public void completeFields_giveTheValues() {
+        FeeInput input = new FeeInput();
+        assertTrue(input.set(FeeInput.COURT_FEE, "2400"));
+        assertTrue(input.set(FeeInput.MEMBERS, "4"));
+        assertTrue(input.set(FeeInput.SHUTTLE_FEE, "400.50"));
+        assertFalse(input.isComplete());
+        assertTrue(input.set(FeeInput.NON_MEMBERS, " 2 "));
+
+        assertTrue(input.isComplete());
+        assertEquals(240_000, input.courtFeeCents());
+        assertEquals(40_050, input.shuttleFeeCents());
+        assertEquals(4, input.numMembers());
+        assertEquals(2, input.numNonMembers());
+        for (int field = 0; field < FeeInput.FIELD_COUNT; field++) {
+            assertEquals(0, input.errorOf(field));
+        }
+    }
+
+    @Test
+    public void editsThatKeepTheValue_changeNothing() {
+        FeeInput input = filled();
+        assertFalse(input.set(FeeInput.COURT_FEE, "2400 "));
+        assertFalse(input.set(FeeInput.COURT_FEE, "2400.0"));
+        assertFalse(input.set(FeeInput.MEMBERS, "04"));
+        assertTrue(input.set(FeeInput.MEMBERS, "5"));
+    }
+
+    @Test
+    public void badFields_getInlineErrors() {
+        FeeInput input = filled();
+        assertTrue(input.set(FeeInput.COURT_FEE, "12a"));
+        assertEquals(R.string.error_fee_field_invalid, input.errorOf(FeeInput.COURT_FEE));
+        assertFalse(input.isComplete());
+        input.set(FeeInput.COURT_FEE, "2400");
+        assertTrue(input.isComplete());
+
+        input.set(FeeInput.SHUTTLE_FEE, "-1");
+        assertEquals(R.string.error_fee_negative, input.errorOf(FeeInput.SHUTTLE_FEE));
+        input.set(FeeInput.SHUTTLE_FEE, "400");
+        input.set(FeeInput.MEMBERS, "1.5");
+        assertEquals(R.string.error_fee_field_invalid, input.errorOf(FeeInput.MEMBERS));
+
+        // Nobody playing is only wrong once both counts are in
+        input.set(FeeInput.MEMBERS, "0");
+        input.set(FeeInput.NON_MEMBERS, "");
+        assertEquals(0, input.errorOf(FeeInput.NON_MEMBERS));
+        input.set(FeeInput.NON_MEMBERS, "0");
+        assertEquals(R.string.error_no_players, input.errorOf(FeeInput.NON_MEMBERS));
+        assertFalse(input.isComplete());
+
+        input.set(FeeInput.NON_MEMBERS, "10");
+        input.set(FeeInput.COURT_FEE, "9999999999999999");
+        assertEquals(R.string.error_fee_too_large, input.errorOf(FeeInput.COURT_FEE));
+        assertFalse(input.isComplete());
+    }
+
+    @Test
+    public void emptyField_holdsBackWithoutAnError() {
+        FeeInput input = filled();
+        assertTrue(input.set(FeeInput.SHUTTLE_FEE, ""));
+        assertFalse(input.isComplete());
+        assertEquals(0, input.errorOf(FeeInput.SHUTTLE_FEE));
+    }
+
+    private static FeeInput filled() {
+        FeeInput input = new FeeInput();
+        input.set(FeeInput.COURT_FEE, "2400");
+        input.set(FeeInput.MEMBERS, "4");
+        input.set(FeeInput.SHUTTLE_FEE, "400");
+        input.set(FeeInput.NON_MEMBERS, "2");
+        return input;
+    }
+}
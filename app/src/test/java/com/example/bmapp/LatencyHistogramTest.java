@@ -0,0 +1,54 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the log-bucketed latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void buckets_coverEveryValueWithinHalfAgain() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(micros + " above " + upper, micros <= upper);
+            if (micros > 1) {
+                assertTrue(micros + " far below " + upper, upper <= micros * 3 / 2);
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < micros);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_comeFromTheRightBucket() {
+        for (int i = 0; i < 90; i++) {
+            histogram.recordMicros(1_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.recordMicros(50_000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_000, histogram.getMaxMicros());
+        assertEquals(5_900, histogram.getMeanMicros());
+        long p50 = histogram.getPercentileMicros(50);
+        assertTrue(p50 >= 1_000 && p50 < 1_400);
+        assertEquals(50_000, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    public void empty_reportsZero() {
+        assertEquals(0, histogram.getPercentileMicros(95));
+
+        histogram.recordMicros(10);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+}
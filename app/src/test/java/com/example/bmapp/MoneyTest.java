@@ -0,0 +1,106 @@
+package com.example.bmapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for reading and writing amounts.
+ */
+public class MoneyTest {
+
+    private Locale savedLocale;
+
+    @Before
+    public void setUp() {
+        savedLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(savedLocale);
+    }
+
+    @Test
+    public void parseCents_readsTypedAmounts() {
+        assertEquals(25_000, Money.parseCents("250"));
+        assertEquals(25_050, Money.parseCents(" 250.5 "));
+        assertEquals(123_450, Money.parseCents("1,234.50"));
+        assertEquals(1_250, Money.parseCents("රු 12.50"));
+        assertEquals(50, Money.parseCents(".5"));
+        assertEquals(-100, Money.parseCents("-1"));
+        // Rounded half away from zero at the cent, without going through a double
+        assertEquals(13, Money.parseCents("0.125"));
+        assertEquals(-13, Money.parseCents("-0.125"));
+        assertEquals(12, Money.parseCents("0.1249"));
+        assertEquals(1_000, Money.parseCents("9.999"));
+    }
+
+    @Test
+    public void parseCents_rejectsWhatIsNotAnAmount() {
+        for (String text : new String[] {"", " ", ".", "-", "abc", "1.2.3", "12,5", "1,23,456", ",123",
+                "1,234,", "1e5", "NaN", "Infinity", "12 50", "12345678901234567"}) {
+            assertEquals(text, Money.INVALID, Money.parseCents(text));
+        }
+        assertEquals(9_999_999_999_999_999_00L, Money.parseCents("9999999999999999"));
+    }
+
+    @Test
+    public void parseCents_acceptsLocaleDecimalSeparatorButAlwaysDot() {
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals(1_250, Money.parseCents("12,50"));
+        assertEquals(1_250, Money.parseCents("12.50"));
+        assertEquals(Money.INVALID, Money.parseCents("1.234,50"));
+    }
+
+    @Test
+    public void format_groupsDigitsWithPrefix() {
+        assertEquals("රු 0.00", Money.format(0));
+        assertEquals("රු 0.05", Money.format(5));
+        assertEquals("රු 999.99", Money.format(99_999));
+        assertEquals("රු 1,234.50", Money.format(123_450));
+        assertEquals("රු -1,234,567.89", Money.format(-123_456_789));
+        assertEquals("1234567.89", Money.toPlainText(123_456_789));
+        assertEquals("-0.05", Money.toPlainText(-5));
+
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals("රු 1.234,50", Money.format(123_450));
+    }
+
+    @Test
+    public void formattedAmounts_parseBack() {
+        long[] amounts = {0, 1, 99, 100, 123_456, -98_765, Long.MAX_VALUE / 1000};
+        for (long cents : amounts) {
+            assertEquals(cents, Money.parseCents(Money.format(cents)));
+            assertEquals(cents, Money.parseCents(Money.toPlainText(cents)));
+        }
+    }
+
+    @Test
+    public void formatIntoBuffer_allocatesNothing() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        char[] buffer = new char[Money.MAX_CHARS];
+        long written = 0;
+        // Warm up so the measurement sees compiled code
+        for (int i = 0; i < 200_000; i++) {
+            written += Money.format(i * 37L, buffer);
+        }
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 100_000; i++) {
+            written += Money.format(i * 37L, buffer);
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertTrue(written > 0);
+        // Any per-call allocation would be at least 16 bytes a call; a little is the measuring itself
+        assertTrue("allocated " + allocated + " bytes", allocated < 100_000);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the streaming CSV player import.
+ */
+public class PlayerCsvImporterTest {
+
+    private final List<List<Player>> batches = new ArrayList<>();
+    private final Set<String> takenNames = new HashSet<>();
+
+    @Test
+    public void validRows_areImportedWithSequentialIds() throws Exception {
+        PlayerCsvImporter importer = importer(10);
+        PlayerCsvImporter.Report report = importer.importFrom(new StringReader(
+                "\uFEFFname,amount\r\nකසුන්,250.50\r\n\"Silva, Nimal\",0\n\"Ruwan \"\"R\"\"\",12\n"));
+
+        assertEquals(3, report.imported);
+        assertEquals(0, report.rejected);
+        List<Player> players = batches.get(0);
+        assertEquals("කසුන්", players.get(0).getName());
+        assertEquals(25_050, players.get(0).getAmountCents());
+        assertEquals("Silva, Nimal", players.get(1).getName());
+        assertEquals("Ruwan \"R\"", players.get(2).getName());
+        assertEquals(10, players.get(0).getId());
+        assertEquals(13, importer.getNextId());
+    }
+
+    @Test
+    public void invalidRows_areReportedByLine() throws Exception {
+        takenNames.add(NameIndex.key("Existing"));
+        PlayerCsvImporter.Report report = importer(1).importFrom(new StringReader(
+                "Amali,10\n"
+                        + ",5\n"
+                        + "Sahan,\n"
+                        + "Dinesh,abc\n"
+                        + "Zoë,-1\n"
+                        + "EXISTING,3\n"
+                        + "amali,4\n"
+                        + "Three,1,2\n"
+                        + "\n"
+                        + "Last,1"));
+
+        assertEquals(2, report.imported);
+        assertEquals(7, report.rejected);
+        assertError(report.errors.get(0), 2, R.string.error_empty_player_name);
+        assertError(report.errors.get(1), 3, R.string.error_empty_player_amount);
+        assertError(report.errors.get(2), 4, R.string.error_invalid_amount);
+        assertError(report.errors.get(3), 5, R.string.error_negative_amount);
+        assertError(report.errors.get(4), 6, R.string.error_duplicate_player);
+        assertError(report.errors.get(5), 7, R.string.error_duplicate_player);
+        assertError(report.errors.get(6), 8, R.string.error_csv_columns);
+    }
+
+    @Test
+    public void quotedNewlines_keepLineNumbersRight() throws Exception {
+        PlayerCsvImporter.Report report = importer(1).importFrom(new StringReader(
+                "\"Two\nLines\",1\nBad,x\n"));
+
+        assertEquals(1, report.imported);
+        assertEquals("Two\nLines", batches.get(0).get(0).getName());
+        assertError(report.errors.get(0), 3, R.string.error_invalid_amount);
+    }
+
+    @Test
+    public void largeFiles_areCommittedInBatches() throws Exception {
+        int rows = PlayerCsvImporter.BATCH_SIZE * 2 + 7;
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            csv.append("Player ").append(i).append(',').append(i).append('\n');
+        }
+
+        PlayerCsvImporter.Report report = importer(1).importFrom(new StringReader(csv.toString()));
+
+        assertEquals(rows, report.imported);
+        assertEquals(3, batches.size());
+        assertEquals(PlayerCsvImporter.BATCH_SIZE, batches.get(0).size());
+        assertEquals(7, batches.get(2).size());
+    }
+
+    @Test
+    public void overlongRow_isRejectedWithoutBufferingIt() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i <= PlayerCsvImporter.MAX_ROW_LENGTH; i++) {
+            csv.append('x');
+        }
+        csv.append(",1\nOk,2\n");
+
+        PlayerCsvImporter.Report report = importer(1).importFrom(new StringReader(csv.toString()));
+
+        assertEquals(1, report.imported);
+        assertError(report.errors.get(0), 1, R.string.error_csv_row_too_long);
+    }
+
+    @Test
+    public void rowsTheSinkLeavesOut_areCountedAsSkipped() throws Exception {
+        // The sink stores all but one row of each batch, as if the name had been added meanwhile
+        PlayerCsvImporter importer = new PlayerCsvImporter(takenNames, 1, batch -> batch.size() - 1);
+        PlayerCsvImporter.Report report = importer.importFrom(new StringReader("Kasun,1\nNimal,2\nBad,x\n"));
+
+        assertEquals(1, report.imported);
+        assertEquals(2, report.rejected);
+        assertEquals(1, report.errors.size());
+    }
+
+    private PlayerCsvImporter importer(long firstId) {
+        return new PlayerCsvImporter(takenNames, firstId, batch -> {
+            batches.add(new ArrayList<>(batch));
+            return batch.size();
+        });
+    }
+
+    private static void assertError(PlayerCsvImporter.RowError error, long line, int messageRes) {
+        assertEquals(line, error.lineNumber);
+        assertEquals(messageRes, error.messageRes);
+    }
+}
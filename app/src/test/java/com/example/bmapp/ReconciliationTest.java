@@ -0,0 +1,98 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for reconciling payments against dues and settling up.
+ */
+public class ReconciliationTest {
+
+    @Test
+    public void dues_followTheFeeSplitAndSettleExactMatchesDirectly() {
+        // 24.00 court + 4.00 shuttle for 2 members and 2 non-members: non-members 7.00, members -5.00
+        List<Player> players = new ArrayList<>();
+        players.add(new Player(1, "Kasun", 0, true));
+        players.add(new Player(2, "Nimal", -500, true));
+        players.add(new Player(3, "Sahan", 1_200, false));
+        players.add(new Player(4, "Ruwan", 200, false));
+        Reconciliation.Result result = Reconciliation.reconcile(RosterColumns.of(players), 2_400, 400,
+                new AtomicBoolean());
+
+        assertEquals(2, result.members);
+        assertEquals(2, result.nonMembers);
+        assertEquals(400, result.dueCents);
+        assertArrayEquals(new long[] {500, 0, 500, -500}, result.balanceCents);
+        assertArrayEquals(new int[] {3}, result.underpaid);
+        assertArrayEquals(new int[] {0, 2}, result.overpaid);
+
+        // Ruwan owes exactly what Kasun is owed; the rest of the fees were overpaid, so the club refunds Sahan
+        assertEquals(2, result.transferCount());
+        assertTransfer(result, 0, 4, 1, 500);
+        assertTransfer(result, 1, Reconciliation.CLUB, 3, 500);
+    }
+
+    @Test
+    public void randomRosters_settleEveryBalanceWithFewerTransfersThanPlayers() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            int size = 1 + random.nextInt(3_000);
+            List<Player> players = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                players.add(new Player(i * 3L, "Player " + i, random.nextInt(2_000), random.nextBoolean()));
+            }
+            RosterColumns roster = RosterColumns.of(players);
+            long courtFee = random.nextInt(500_000);
+            long shuttleFee = random.nextInt(100_000);
+            Reconciliation.Result result = Reconciliation.reconcile(roster, courtFee, shuttleFee,
+                    new AtomicBoolean());
+
+            long balanceSum = 0;
+            Map<Long, Long> remaining = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                balanceSum += result.balanceCents[i];
+                remaining.put(roster.idAt(i), result.balanceCents[i]);
+            }
+            assertEquals(result.paidCents - result.dueCents, balanceSum);
+            for (int i = 1; i < result.underpaid.length; i++) {
+                assertTrue(result.balanceCents[result.underpaid[i - 1]] <= result.balanceCents[result.underpaid[i]]);
+            }
+
+            // Applying every transfer leaves nobody owing or owed anything
+            for (int i = 0; i < result.transferCount(); i++) {
+                assertTrue(result.transferCents[i] > 0);
+                if (result.fromIds[i] != Reconciliation.CLUB) {
+                    remaining.merge(result.fromIds[i], result.transferCents[i], Long::sum);
+                }
+                if (result.toIds[i] != Reconciliation.CLUB) {
+                    remaining.merge(result.toIds[i], -result.transferCents[i], Long::sum);
+                }
+            }
+            for (long left : remaining.values()) {
+                assertEquals(0, left);
+            }
+            assertTrue(result.transferCount() <= result.underpaid.length + result.overpaid.length);
+        }
+    }
+
+    @Test(expected = java.util.concurrent.CancellationException.class)
+    public void cancelled_stops() {
+        List<Player> players = new ArrayList<>();
+        players.add(new Player(1, "Kasun", 1_000));
+        Reconciliation.reconcile(RosterColumns.of(players), 100, 100, new AtomicBoolean(true));
+    }
+
+    private static void assertTransfer(Reconciliation.Result result, int i, long from, long to, long cents) {
+        assertEquals(from, result.fromIds[i]);
+        assertEquals(to, result.toIds[i]);
+        assertEquals(cents, result.transferCents[i]);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bmapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for local backups: deltas, chain rollover, retention and
+ * restoring past damaged files.
+ */
+public class RosterBackupTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeSource source = new FakeSource();
+
+    @Test
+    public void deltas_holdOnlyChangesAndRestoreToTheLatestState() throws IOException {
+        File dir = folder.newFolder("backups");
+        for (int i = 1; i <= 2_000; i++) {
+            source.players.put((long) i, new Player(i, "Player " + i, i * 100));
+        }
+        // Longer than writeUTF can take
+        StringBuilder longName = new StringBuilder();
+        while (longName.length() < 30_000) {
+            longName.append('ක');
+        }
+        source.players.put(2_000L, new Player(2_000, longName.toString(), 200_000));
+        source.addSession(1, 10, 11);
+        assertEquals(RosterBackup.Outcome.FULL, RosterBackup.backUp(dir, source, 1_000));
+
+        source.players.put(5L, new Player(5, "Renamed", 500));
+        source.players.put(6L, new Player(6, "Player 6", 6_000));
+        source.players.remove(7L);
+        source.players.put(2_001L, new Player(2_001, "New", 100));
+        source.players.put(8L, new Player(8, "Player 8", 800, true));
+        source.addSession(2, 2_001);
+        assertEquals(RosterBackup.Outcome.DELTA, RosterBackup.backUp(dir, source, 2_000));
+        assertEquals(RosterBackup.Outcome.UNCHANGED, RosterBackup.backUp(dir, source, 3_000));
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bmb"));
+        Arrays.sort(files);
+        assertEquals(2, files.length);
+        assertTrue(files[1].length() * 20 < files[0].length());
+
+        RosterBackup.Contents contents = RosterBackup.restoreLatest(dir);
+        assertEquals(2_000, contents.createdAt);
+        assertRestored(contents);
+    }
+
+    @Test
+    public void chainsRollOverAndOnlyTheNewestAreKept() throws IOException {
+        File dir = folder.newFolder("backups");
+        int deltas = 0;
+        for (int run = 1; run <= 40; run++) {
+            source.players.put((long) run, new Player(run, "Player " + run, run * 100));
+            if (run % 3 == 0) {
+                source.addSession(run, run);
+            }
+            RosterBackup.Outcome outcome = RosterBackup.backUp(dir, source, run);
+            assertNotEquals(RosterBackup.Outcome.UNCHANGED, outcome);
+            if (outcome == RosterBackup.Outcome.DELTA) {
+                deltas++;
+            }
+        }
+        // The roster is tiny, so chains also close early once their deltas outweigh the full snapshot
+        assertTrue("deltas " + deltas, deltas > 20);
+        String[] files = dir.list((d, name) -> name.endsWith(".bmb"));
+        assertTrue(files.length <= RosterBackup.KEPT_CHAINS * (RosterBackup.MAX_DELTAS + 1));
+        assertRestored(RosterBackup.restoreLatest(dir));
+    }
+
+    @Test
+    public void damagedFiles_areSkippedForTheNewestIntactState() throws IOException {
+        File dir = folder.newFolder("backups");
+        source.players.put(1L, new Player(1, "Kasun", 1_000));
+        RosterBackup.backUp(dir, source, 1);
+        source.players.put(2L, new Player(2, "Nimal", 2_000));
+        RosterBackup.backUp(dir, source, 2);
+        source.players.put(3L, new Player(3, "Sahan", 3_000));
+        RosterBackup.backUp(dir, source, 3);
+
+        // The last delta is damaged, so the restore stops at the one before
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bmb"));
+        Arrays.sort(files);
+        flipLastByte(files[2]);
+        RosterBackup.Contents contents = RosterBackup.restoreLatest(dir);
+        assertEquals(2, contents.createdAt);
+        assertEquals(2, contents.players.size());
+
+        // A damaged full snapshot leaves nothing to restore from its chain
+        flipLastByte(files[0]);
+        assertNull(RosterBackup.restoreLatest(dir));
+
+        // A damaged state file means the next backup starts a new chain
+        source.players.put(4L, new Player(4, "Ruwan", 4_000));
+        flipLastByte(new File(dir, "backup.state"));
+        assertEquals(RosterBackup.Outcome.FULL, RosterBackup.backUp(dir, source, 4));
+        assertRestored(RosterBackup.restoreLatest(dir));
+    }
+
+    private void assertRestored(RosterBackup.Contents contents) {
+        assertNotNull(contents);
+        assertEquals(source.players.size(), contents.players.size());
+        for (Player player : contents.players) {
+            Player expected = source.players.get(player.getId());
+            assertNotNull(expected);
+            assertEquals(expected.getName(), player.getName());
+            assertEquals(expected.getAmountCents(), player.getAmountCents());
+            assertEquals(expected.isMember(), player.isMember());
+        }
+        assertEquals(source.sessions.size(), contents.sessions.size());
+        for (RosterBackup.SessionRecord record : contents.sessions) {
+            RosterBackup.SessionRecord expected = source.sessions.get(record.sessionId);
+            assertNotNull(expected);
+            assertEquals(expected.session.playedAt, record.session.playedAt);
+            assertEquals(expected.session.totalCents, record.session.totalCents);
+            assertEquals(expected.attendees.size(), record.attendees.size());
+            for (int i = 0; i < record.attendees.size(); i++) {
+                assertEquals(expected.attendees.get(i).playerId, record.attendees.get(i).playerId);
+                assertEquals(expected.attendees.get(i).owedCents, record.attendees.get(i).owedCents);
+            }
+        }
+    }
+
+    private static void flipLastByte(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+    }
+
+    private static final class FakeSource implements RosterBackup.Source {
+        final Map<Long, Player> players = new TreeMap<>();
+        final Map<Long, RosterBackup.SessionRecord> sessions = new TreeMap<>();
+
+        void addSession(long sessionId, long... playerIds) {
+            List<SessionLedger.Attendee> attendees = new ArrayList<>();
+            for (long playerId : playerIds) {
+                attendees.add(new SessionLedger.Attendee(playerId, playerId % 2 == 0, 250));
+            }
+            SessionLedger.Session session = new SessionLedger.Session(sessionId * 1_000, 2_400, 400,
+                    attendees.size(), 0, 250, 0, 250L * attendees.size());
+            sessions.put(sessionId, new RosterBackup.SessionRecord(sessionId, session,
+                    Collections.unmodifiableList(attendees)));
+        }
+
+        @Override
+        public void forEachPlayer(RosterBackup.PlayerVisitor visitor) throws IOException {
+            for (Player player : players.values()) {
+                visitor.visit(player.getId(), player.getName(), player.getAmountCents(),
+                        player.isMember());
+            }
+        }
+
+        @Override
+        public void forEachSessionAfter(long afterId, SessionLedger.RecordVisitor visitor) throws IOException {
+            for (RosterBackup.SessionRecord record : sessions.values()) {
+                if (record.sessionId > afterId) {
+                    visitor.visit(record.sessionId, record.session, record.attendees);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.bmapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trip and corruption tests for the binary roster format.
+ */
+public class RosterCodecTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_largeGeneratedRoster() throws IOException {
+        List<Player> players = generateRoster(100_000, 42);
+        File file = tmp.newFile("roster.bin");
+
+        write(file, players);
+
+        assertRosterEquals(players, read(file));
+    }
+
+    @Test
+    public void roundTrip_emptyRoster() throws IOException {
+        File file = tmp.newFile("empty.bin");
+
+        write(file, Collections.emptyList());
+
+        assertEquals(RosterCodec.HEADER_SIZE, file.length());
+        assertTrue(read(file).isEmpty());
+    }
+
+    @Test
+    public void roundTrip_unicodeAndOversizedNames() throws IOException {
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) {
+            longName.append("ක");
+        }
+        List<Player> players = new ArrayList<>();
+        players.add(new Player(1, "කසුන්", 25_050, true));
+        players.add(new Player(2, "Zoë", 0));
+        players.add(new Player(Long.MAX_VALUE, longName.toString(), 9_999_999_999L));
+        File file = tmp.newFile("unicode.bin");
+
+        write(file, players);
+
+        assertRosterEquals(players, read(file));
+    }
+
+    @Test
+    public void readingStopsAtTheEndOfTheRoster() throws IOException {
+        File file = tmp.newFile("followed.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            RosterCodec.Writer writer = new RosterCodec.Writer(out.getChannel());
+            writer.add(1, "Kasun", 100, false);
+            writer.finish();
+            out.write(0x7E);
+        }
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertEquals(1, RosterCodec.read(in.getChannel(), (id, name, cents, member) -> { }));
+            assertEquals(0x7E, in.read());
+        }
+    }
+
+    @Test
+    public void read_rejectsFlippedPayloadByte() throws IOException {
+        File file = tmp.newFile("corrupt.bin");
+        write(file, generateRoster(1_000, 7));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = RosterCodec.HEADER_SIZE + 500;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0x01);
+        }
+
+        try {
+            read(file);
+            fail("Expected checksum failure");
+        } catch (IOException expected) {
+            // Either the record structure or the checksum catches it
+        }
+    }
+
+    @Test
+    public void read_rejectsTruncatedFile() throws IOException {
+        File file = tmp.newFile("truncated.bin");
+        write(file, generateRoster(1_000, 9));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 10);
+        }
+
+        try {
+            read(file);
+            fail("Expected truncation failure");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Truncated"));
+        }
+    }
+
+    @Test
+    public void read_rejectsNewerVersion() throws IOException {
+        File file = tmp.newFile("future.bin");
+        write(file, generateRoster(10, 3));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.write(RosterCodec.FORMAT_VERSION + 1);
+        }
+
+        try {
+            read(file);
+            fail("Expected version failure");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("version"));
+        }
+    }
+
+    static List<Player> generateRoster(int size, long seed) {
+        Random random = new Random(seed);
+        List<Player> players = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = (i % 3 == 0 ? "සාමාජික " : "Player ") + i;
+            players.add(new Player(i + 1, name, random.nextInt(10_000_000), i % 3 == 0));
+        }
+        return players;
+    }
+
+    private static void write(File file, List<Player> players) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            RosterCodec.Writer writer = new RosterCodec.Writer(out.getChannel());
+            for (Player player : players) {
+                writer.add(player.getId(), player.getName(), player.getAmountCents(), player.isMember());
+            }
+            writer.finish();
+        }
+    }
+
+    private static List<Player> read(File file) throws IOException {
+        List<Player> players = new ArrayList<>();
+        try (FileInputStream in = new FileInputStream(file)) {
+            RosterCodec.read(in.getChannel(),
+                    (id, name, cents, member) -> players.add(new Player(id, name, cents, member)));
+        }
+        return players;
+    }
+
+    private static void assertRosterEquals(List<Player> expected, List<Player> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            assertEquals(expected.get(i).getAmountCents(), actual.get(i).getAmountCents());
+            assertEquals(expected.get(i).isMember(), actual.get(i).isMember());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * JVM tests for the columnar roster, checked against a plain list of players,
+ * and its memory use against that list.
+ */
+public class RosterColumnsTest {
+
+    @Test
+    public void randomEdits_matchAListOfPlayers() {
+        Random random = new Random(7);
+        List<Player> expected = new ArrayList<>();
+        RosterColumns columns = RosterColumns.empty();
+        long nextId = 1;
+        for (int step = 0; step < 5_000; step++) {
+            // Inserts outnumber removals, so chunks fill up and split
+            int operation = expected.isEmpty() ? 0 : random.nextInt(5);
+            if (operation <= 2) {
+                // Mostly new ids at the end, sometimes a gap refilled as undo does
+                long id = random.nextInt(10) == 0 && nextId > 2 ? findGap(expected, nextId) : nextId;
+                Player player = new Player(id, "Player " + id, random.nextInt(100_000), random.nextBoolean());
+                if (id == nextId) {
+                    nextId++;
+                    expected.add(player);
+                } else if (id > 0) {
+                    expected.add(-indexOf(expected, id) - 1, player);
+                } else {
+                    continue;
+                }
+                columns = columns.withInserted(player);
+            } else if (operation == 3) {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                columns = columns.withRemoved(index);
+            } else {
+                int index = random.nextInt(expected.size());
+                long cents = random.nextInt(100_000);
+                Player old = expected.get(index);
+                boolean member = random.nextBoolean();
+                expected.set(index, new Player(old.getId(), "Renamed " + old.getId(), cents, member));
+                columns = columns.withReplaced(index, "Renamed " + old.getId(), cents, member);
+            }
+        }
+
+        assertSameRoster(expected, columns);
+    }
+
+    @Test
+    public void snapshots_areNotChangedByLaterEdits() {
+        RosterColumns before = RosterColumns.of(players(1_000));
+        RosterColumns after = before.withReplaced(10, "Changed", 1, false).withRemoved(500);
+
+        assertSameRoster(players(1_000), before);
+        assertEquals(999, after.size());
+        assertEquals("Changed", after.nameAt(10));
+    }
+
+    @Test
+    public void merged_interleavesById() {
+        List<Player> all = players(1_000);
+        List<Player> odd = new ArrayList<>();
+        List<Player> even = new ArrayList<>();
+        for (Player player : all) {
+            (player.getId() % 2 == 0 ? even : odd).add(player);
+        }
+
+        assertSameRoster(all, RosterColumns.of(odd).merged(RosterColumns.of(even)));
+    }
+
+    @Test
+    public void bulkOperations_matchTheObjectList() {
+        List<Player> players = players(3_000);
+        RosterColumns columns = RosterColumns.of(players);
+
+        int[] order = columns.sortedByCents();
+        for (int i = 1; i < order.length; i++) {
+            long previous = columns.centsAt(order[i - 1]);
+            long current = columns.centsAt(order[i]);
+            assertTrue(previous < current || (previous == current && order[i - 1] < order[i]));
+        }
+
+        int[] rich = columns.filter((id, name, cents) -> cents >= 50_000);
+        int count = 0;
+        for (Player player : players) {
+            if (player.getAmountCents() >= 50_000) {
+                assertEquals(player.getId(), columns.idAt(rich[count++]));
+            }
+        }
+        assertEquals(count, rich.length);
+    }
+
+    @Test
+    public void memoryPerPlayer_isWellBelowTheObjectList() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        int size = 100_000;
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "Player " + i;
+        }
+
+        // Names are shared by both, so only the structure is counted
+        long start = allocatedBytes(threads);
+        List<Player> objects = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            objects.add(new Player(i + 1, names[i], i));
+        }
+        long objectBytes = allocatedBytes(threads) - start;
+
+        start = allocatedBytes(threads);
+        RosterColumns columns = RosterColumns.of(objects);
+        long columnBytes = allocatedBytes(threads) - start;
+
+        assertTrue(columnBytes * 3 < objectBytes * 2);
+
+        // One edit: the list is copied whole, the columns copy one chunk
+        start = allocatedBytes(threads);
+        List<Player> editedObjects = new ArrayList<>(objects);
+        editedObjects.set(size / 2, new Player(size / 2 + 1, "Edited", 100));
+        long objectEditBytes = allocatedBytes(threads) - start;
+
+        start = allocatedBytes(threads);
+        RosterColumns editedColumns = columns.withReplaced(size / 2, "Edited", 100, false);
+        long columnEditBytes = allocatedBytes(threads) - start;
+
+        assertTrue(columnEditBytes * 10 < objectEditBytes);
+        assertEquals(editedObjects.size(), editedColumns.size());
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static List<Player> players(int size) {
+        Random random = new Random(size);
+        List<Player> players = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            players.add(new Player(i + 1, "Player " + i, random.nextInt(100_000)));
+        }
+        return players;
+    }
+
+    private static void assertSameRoster(List<Player> expected, RosterColumns columns) {
+        assertEquals(expected.size(), columns.size());
+        long total = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            Player player = expected.get(i);
+            long cents = player.getAmountCents();
+            assertEquals(player.getId(), columns.idAt(i));
+            assertEquals(player.getName(), columns.nameAt(i));
+            assertEquals(cents, columns.centsAt(i));
+            assertEquals(player.isMember(), columns.memberAt(i));
+            assertEquals(i, columns.indexOfId(player.getId()));
+            assertEquals(cents, columns.get(i).getAmountCents());
+            total += cents;
+        }
+        assertEquals(total, columns.totalCents());
+    }
+
+    // An id below nextId that is not on the roster, or 0 if there is none nearby
+    private static long findGap(List<Player> players, long nextId) {
+        Random random = new Random(nextId);
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long id = 1 + random.nextInt((int) nextId - 1);
+            if (indexOf(players, id) < 0) {
+                return id;
+            }
+        }
+        return 0;
+    }
+
+    private static int indexOf(List<Player> players, long id) {
+        long[] ids = new long[players.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = players.get(i).getId();
+        }
+        return Arrays.binarySearch(ids, id);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.bmapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for formatting export spools as CSV and JSON.
+ */
+public class RosterExporterTest {
+
+    private File spool;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final List<long[]> progress = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        spool = File.createTempFile("export", ".spool");
+    }
+
+    @After
+    public void tearDown() {
+        spool.delete();
+    }
+
+    @Test
+    public void playersCsv_roundTripsThroughTheImporter() throws IOException, InterruptedException {
+        long rows;
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            writer.addPlayer(1, "කසුන්", 25_050, false);
+            writer.addPlayer(2, "Silva, \"Nimal\"", 5, false);
+            rows = writer.getRowCount();
+        }
+
+        String csv = write(rows, RosterExporter.Kind.PLAYERS_CSV);
+        assertEquals("name,amount\nකසුන්,250.50\n\"Silva, \"\"Nimal\"\"\",0.05\n", csv);
+
+        List<Player> imported = new ArrayList<>();
+        PlayerCsvImporter.Report report = new PlayerCsvImporter(new HashSet<>(), 1, batch -> {
+            imported.addAll(batch);
+            return batch.size();
+        }).importFrom(new StringReader(csv));
+        assertEquals(2, report.imported);
+        assertEquals("Silva, \"Nimal\"", imported.get(1).getName());
+        assertEquals(5, imported.get(1).getAmountCents());
+    }
+
+    @Test
+    public void namesPastTheWriteUtfLimit_stillExport() throws IOException {
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 30_000) {
+            // Three UTF-8 bytes each, so this is about 90,000 bytes
+            name.append('ක');
+        }
+        long rows;
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            writer.addPlayer(1, name.toString(), 100, false);
+            rows = writer.getRowCount();
+        }
+
+        assertEquals("name,amount\n" + name + ",1.00\n", write(rows, RosterExporter.Kind.PLAYERS_CSV));
+    }
+
+    @Test
+    public void json_listsPlayersThenSessions() throws IOException {
+        FeeCalculator.Result result = new FeeCalculator.Result();
+        FeeCalculator.calculate(100_000, 1_000, 2, 1, result);
+        long rows;
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            writer.addPlayer(7, "Zoë", 100, false);
+            writer.addSession(3, new SessionLedger.Session(0, 100_000, 1_000, 2, 1, result));
+            rows = writer.getRowCount();
+        }
+
+        String json = write(rows, RosterExporter.Kind.ALL_JSON).replaceAll("\\s", "");
+
+        assertTrue(json, json.contains("\"players\":[{\"id\":7,\"name\":\"Zoë\",\"amount\":1.00}]"));
+        assertTrue(json, json.contains("\"sessions\":[{\"id\":3,"));
+        assertTrue(json, json.contains("\"courtFee\":1000.00,\"shuttleFee\":10.00,\"members\":2,\"nonMembers\":1"));
+        assertTrue(json, json.contains("\"memberShare\":-163.34"));
+    }
+
+    @Test
+    public void json_withoutSessions_stillHasBothArrays() throws IOException {
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            // empty
+        }
+
+        String json = write(0, RosterExporter.Kind.ALL_JSON).replaceAll("\\s", "");
+
+        assertTrue(json, json.endsWith("\"players\":[],\"sessions\":[]}"));
+    }
+
+    @Test
+    public void progress_isReportedInStepsAndAtTheEnd() throws IOException {
+        int players = RosterExporter.PROGRESS_STEP * 3 + 1;
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            for (int i = 0; i < players; i++) {
+                writer.addPlayer(i + 1, "Player " + i, i, false);
+            }
+        }
+
+        write(players, RosterExporter.Kind.PLAYERS_CSV);
+
+        assertEquals(4, progress.size());
+        assertEquals(RosterExporter.PROGRESS_STEP, progress.get(0)[0]);
+        assertEquals(players, progress.get(3)[0]);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelling_stopsTheExport() throws IOException {
+        try (RosterExporter.SpoolWriter writer = new RosterExporter.SpoolWriter(spool)) {
+            for (int i = 0; i < RosterExporter.PROGRESS_STEP; i++) {
+                writer.addPlayer(i + 1, "Player " + i, i, false);
+            }
+        }
+        cancelled.set(true);
+
+        write(RosterExporter.PROGRESS_STEP, RosterExporter.Kind.PLAYERS_CSV);
+    }
+
+    private String write(long rows, RosterExporter.Kind kind) throws IOException {
+        StringWriter out = new StringWriter();
+        RosterExporter.write(spool, rows, kind, out, (done, total) -> progress.add(new long[] {done, total}), cancelled);
+        return out.toString();
+    }
+}
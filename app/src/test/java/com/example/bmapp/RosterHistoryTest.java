@@ -0,0 +1,75 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the bounded undo and redo stacks.
+ */
+public class RosterHistoryTest {
+
+    private final RosterHistory history = new RosterHistory();
+    private final List<String> log = new ArrayList<>();
+
+    @Test
+    public void undoThenRedo_runInReverseAndForwardOrder() {
+        record("a");
+        record("b");
+
+        assertTrue(history.undo());
+        assertTrue(history.undo());
+        assertFalse(history.undo());
+        assertTrue(history.redo());
+
+        assertEquals(Arrays.asList("undo b", "undo a", "redo a"), log);
+        assertTrue(history.canRedo());
+    }
+
+    @Test
+    public void newStep_dropsEverythingThatCouldBeRedone() {
+        record("a");
+        history.undo();
+        record("b");
+
+        assertFalse(history.canRedo());
+        assertFalse(history.redo());
+    }
+
+    @Test
+    public void oldestSteps_areDroppedPastTheLimit() {
+        for (int i = 0; i < RosterHistory.MAX_STEPS + 10; i++) {
+            record(String.valueOf(i));
+        }
+
+        int undone = 0;
+        while (history.undo()) {
+            undone++;
+        }
+
+        assertEquals(RosterHistory.MAX_STEPS, undone);
+        assertEquals("undo 10", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void undoOfAStep_onlyRunsWhileThatStepIsTheLatest() {
+        history.record(7, () -> log.add("undo delete"), () -> log.add("redo delete"));
+        record("edit");
+
+        // An undo offered for the delete must not reverse the edit made since
+        assertFalse(history.undo(7));
+        assertTrue(history.undo());
+        assertTrue(history.undo(7));
+        assertFalse(history.undo(7));
+
+        assertEquals(Arrays.asList("undo edit", "undo delete"), log);
+    }
+
+    private void record(String name) {
+        history.record(() -> log.add("undo " + name), () -> log.add("redo " + name));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the players screen search and sort.
+ */
+public class RosterIndexTest {
+
+    private final Collator collator = RosterIndex.newCollator();
+    private final AtomicBoolean notCancelled = new AtomicBoolean();
+
+    private final RosterColumns roster = RosterColumns.of(Arrays.asList(
+            new Player(1, "nimal Perera", 5_000),
+            new Player(2, "කසුන්", 1_000),
+            new Player(3, "Amali", 5_000),
+            new Player(4, "Nirosha Silva", 500),
+            new Player(5, "Perera Kamal", 2_000)));
+
+    @Test
+    public void everyWordIsMatchedByPrefixIgnoringCase() {
+        RosterIndex index = RosterIndex.build(roster, collator, null);
+
+        assertEquals(Arrays.asList(1L, 4L), ids(index.query("NI", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertEquals(Arrays.asList(1L, 5L), ids(index.query("per", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertEquals(Arrays.asList(2L), ids(index.query("කසු", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertTrue(index.query("silvax", RosterIndex.Sort.NAME_ASCENDING, notCancelled).isEmpty());
+    }
+
+    @Test
+    public void severalWords_mustAllMatch() {
+        RosterIndex index = RosterIndex.build(roster, collator, null);
+
+        assertEquals(Arrays.asList(1L), ids(index.query(" ni  per ", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+    }
+
+    @Test
+    public void sorts_byNameThenAmountWithNameBreakingTies() {
+        RosterIndex index = RosterIndex.build(roster, collator, null);
+
+        assertEquals(Arrays.asList(3L, 1L, 4L, 5L, 2L), ids(index.query("", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertEquals(Arrays.asList(2L, 5L, 4L, 1L, 3L), ids(index.query("", RosterIndex.Sort.NAME_DESCENDING, notCancelled)));
+        assertEquals(Arrays.asList(4L, 2L, 5L, 3L, 1L), ids(index.query("", RosterIndex.Sort.AMOUNT_ASCENDING, notCancelled)));
+    }
+
+    @Test
+    public void rebuild_keepsWorkingAfterEdits() {
+        RosterIndex first = RosterIndex.build(roster, collator, null);
+        RosterColumns edited = roster.withReplaced(0, "Zahir", 5_000, false)
+                .withRemoved(2)
+                .withInserted(new Player(6, "Nuwan", 100));
+
+        RosterIndex second = RosterIndex.build(edited, collator, first);
+
+        assertEquals(Arrays.asList(1L), ids(second.query("z", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertEquals(Arrays.asList(4L, 6L), ids(second.query("n", RosterIndex.Sort.NAME_ASCENDING, notCancelled)));
+        assertEquals(Arrays.asList(6L, 4L, 2L, 5L, 1L), ids(second.query("", RosterIndex.Sort.AMOUNT_ASCENDING, notCancelled)));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledQuery_stops() {
+        RosterIndex index = RosterIndex.build(roster, collator, null);
+
+        index.query("", RosterIndex.Sort.NAME_ASCENDING, new AtomicBoolean(true));
+    }
+
+    private static List<Long> ids(List<Player> players) {
+        List<Long> ids = new ArrayList<>();
+        for (Player player : players) {
+            ids.add(player.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.bmapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM stress tests for the roster's single writer: concurrent writers and
+ * readers, batched store writes and snapshot announcements.
+ */
+public class RosterWriterTest {
+
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor();
+    private final FakeStore store = new FakeStore();
+    private final AtomicReference<RosterColumns> announced = new AtomicReference<>();
+    private final AtomicInteger writeFailures = new AtomicInteger();
+    private RosterWriter writer;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+        }
+        notifier.shutdownNow();
+    }
+
+    @Test
+    public void concurrentWritersAndReaders_seeConsistentSnapshotsAndStoreMatches() throws Exception {
+        for (int i = 1; i <= 300; i++) {
+            store.rows.put((long) i, new Player(i, "Loaded " + i, i * 100));
+        }
+        writer = newWriter();
+        writer.load();
+
+        int writers = 4;
+        int readers = 4;
+        AtomicBoolean done = new AtomicBoolean();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        RosterColumns players = writer.getPlayers();
+                        long someId = players.isEmpty() ? 1 : players.idAt(random.nextInt(players.size()));
+                        switch (random.nextInt(8)) {
+                            case 0:
+                            case 1:
+                            case 2:
+                                writer.add("Writer " + seed + " player " + i, random.nextInt(10_000), false,
+                                        () -> { });
+                                break;
+                            case 3:
+                            case 5:
+                                writer.update(new Player(someId, "Renamed " + seed + "-" + i, random.nextInt(50_000)),
+                                        () -> { }, () -> { });
+                                break;
+                            case 4:
+                                writer.delete(someId);
+                                break;
+                            case 6:
+                                writer.undo();
+                                break;
+                            default:
+                                writer.redo();
+                                break;
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        RosterColumns players = writer.getPlayers();
+                        long total = checkSnapshot(players);
+                        // A snapshot never changes after it is published
+                        assertEquals(total, checkSnapshot(players));
+                        writer.isNameTaken("Loaded 7", 0);
+                        writer.copyNameKeys();
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (int i = 0; i < writers; i++) {
+            threads.get(i).join();
+        }
+        writer.awaitIdle();
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.peek());
+        }
+
+        RosterColumns players = writer.getPlayers();
+        checkSnapshot(players);
+        assertEquals(store.rows.size(), players.size());
+        for (int i = 0; i < players.size(); i++) {
+            Player stored = store.rows.get(players.idAt(i));
+            assertNotNull(stored);
+            assertEquals(stored.getName(), players.nameAt(i));
+            assertEquals(stored.getAmountCents(), players.centsAt(i));
+            assertEquals(players.idAt(i), writer.findIdByName(players.nameAt(i)));
+        }
+        assertEquals(players.size(), writer.copyNameKeys().size());
+        assertEquals(0, writeFailures.get());
+        // Thousands of changes were saved in far fewer transactions
+        assertTrue("transactions " + store.transactions, store.transactions.get() < 8_000);
+
+        // The last announcement carries the final roster
+        notifier.submit(() -> { }).get();
+        assertSame(players, announced.get());
+    }
+
+    @Test
+    public void changesQueuedWhileTheStoreIsBusy_areWrittenInOneTransaction() throws Exception {
+        writer = newWriter();
+        writer.load();
+        writer.awaitIdle();
+        CountDownLatch release = new CountDownLatch(1);
+        store.blockNextTransaction(release);
+        writer.add("First", 100, false, () -> { });
+        // The first change's transaction is now stuck, so the next ones pile up behind it
+        store.awaitBlocked();
+        for (int i = 0; i < 500; i++) {
+            writer.add("Player " + i, i * 100, false, () -> { });
+        }
+        release.countDown();
+        writer.awaitIdle();
+
+        assertEquals(501, store.rows.size());
+        assertEquals(2, store.transactions.get());
+        assertEquals(501, writer.getPlayers().size());
+    }
+
+    @Test
+    public void failingWrite_losesOnlyItselfAndIsDroppedFromMemory() throws Exception {
+        writer = newWriter();
+        writer.load();
+        writer.awaitIdle();
+        CountDownLatch release = new CountDownLatch(1);
+        store.blockNextTransaction(release);
+        writer.add("First", 100, false, () -> { });
+        store.awaitBlocked();
+        writer.add("Second", 200, false, () -> { });
+        store.failInsertOf = "Third";
+        writer.add("Third", 300, false, () -> { });
+        writer.add("Fourth", 400, false, () -> { });
+        release.countDown();
+        writer.awaitIdle();
+        notifier.submit(() -> { }).get();
+
+        assertEquals(1, writeFailures.get());
+        assertEquals(3, store.rows.size());
+        // Memory matches the store again, so the name is free and undo can't bring back what failed
+        RosterColumns players = writer.getPlayers();
+        assertEquals(3, players.size());
+        assertEquals("Fourth", players.nameAt(2));
+        assertFalse(writer.isNameTaken("Third", 0));
+        assertFalse(writer.canUndo());
+        assertSame(players, announced.get());
+    }
+
+    @Test
+    public void importedBatches_keepIdsInOrderAndSkipNamesTakenMeanwhile() throws Exception {
+        writer = newWriter();
+        writer.load();
+        writer.add("Kasun", 1_000, false, () -> { });
+        AtomicInteger namesTaken = new AtomicInteger();
+        writer.add("KASUN", 2_000, false, namesTaken::incrementAndGet);
+        writer.awaitIdle();
+        notifier.submit(() -> { }).get();
+        assertEquals(1, namesTaken.get());
+
+        // The importer picked its ids before Kasun was added, so the first clashes
+        assertEquals(1, writer.addAll(Collections.singletonList(new Player(1, "Nimal", 500))));
+        assertEquals(1, writer.addAll(Arrays.asList(new Player(2, "kasun", 500), new Player(3, "Sahan", 700))));
+        writer.awaitIdle();
+
+        RosterColumns players = writer.getPlayers();
+        assertEquals(3, players.size());
+        assertEquals("Kasun", players.nameAt(0));
+        assertEquals("Nimal", players.nameAt(1));
+        assertEquals(2, players.idAt(1));
+        assertEquals("Sahan", players.nameAt(2));
+        assertEquals(3, players.idAt(2));
+        assertFalse(writer.canUndo());
+        assertEquals(3, store.rows.size());
+    }
+
+    @Test
+    public void updateToANameTakenMeanwhile_isDroppedAndReported() throws Exception {
+        writer = newWriter();
+        writer.load();
+        writer.add("Kasun", 1_000, false, () -> { });
+        writer.add("Nimal", 2_000, false, () -> { });
+        writer.awaitIdle();
+        AtomicInteger updated = new AtomicInteger();
+        AtomicInteger namesTaken = new AtomicInteger();
+
+        long nimalId = writer.findIdByName("Nimal");
+        writer.update(new Player(nimalId, "KASUN", 2_500), updated::incrementAndGet, namesTaken::incrementAndGet);
+        writer.update(new Player(nimalId, "Sahan", 2_500), updated::incrementAndGet, namesTaken::incrementAndGet);
+        writer.awaitIdle();
+        notifier.submit(() -> { }).get();
+
+        assertEquals(1, namesTaken.get());
+        assertEquals(1, updated.get());
+        assertEquals(nimalId, writer.findIdByName("Sahan"));
+        assertEquals("Sahan", store.rows.get(nimalId).getName());
+    }
+
+    @Test
+    public void idsOfDeletedPlayers_areNotGivenOutAgainAfterARestart() throws Exception {
+        writer = newWriter();
+        writer.load();
+        writer.add("Kasun", 1_000, false, () -> { });
+        writer.add("Nimal", 2_000, false, () -> { });
+        writer.awaitIdle();
+        writer.delete(writer.findIdByName("Nimal"));
+        writer.awaitIdle();
+        writer.shutdown();
+
+        writer = newWriter();
+        writer.load();
+        writer.add("Sahan", 3_000, false, () -> { });
+        writer.awaitIdle();
+
+        assertEquals(3, writer.findIdByName("Sahan"));
+    }
+
+    private RosterWriter newWriter() {
+        return new RosterWriter(store, notifier, new RosterWriter.Callback() {
+            @Override
+            public void onPublished(RosterColumns players) {
+                announced.set(players);
+            }
+
+            @Override
+            public void onWriteFailed(RuntimeException e) {
+                writeFailures.incrementAndGet();
+            }
+        });
+    }
+
+    // Ids strictly increasing and the kept total matching the rows; returns the total
+    private static long checkSnapshot(RosterColumns players) {
+        long total = 0;
+        long previousId = 0;
+        for (int i = 0; i < players.size(); i++) {
+            assertTrue(players.idAt(i) > previousId);
+            previousId = players.idAt(i);
+            total += players.centsAt(i);
+        }
+        assertEquals(total, players.totalCents());
+        return total;
+    }
+
+    /** In-memory store that checks it is only used from one thread at a time. */
+    private static final class FakeStore implements RosterWriter.Store {
+        final Map<Long, Player> rows = new TreeMap<>();
+        final AtomicInteger transactions = new AtomicInteger();
+        final AtomicInteger users = new AtomicInteger();
+        volatile String failInsertOf;
+        private volatile CountDownLatch blockRelease;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private Map<Long, Player> beforeTransaction;
+        private long maxId;
+
+        void blockNextTransaction(CountDownLatch release) {
+            blockRelease = release;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public List<Player> loadPage(long afterId, int limit) {
+            enter();
+            try {
+                List<Player> page = new ArrayList<>();
+                for (Player player : rows.values()) {
+                    if (player.getId() > afterId && page.size() < limit) {
+                        page.add(player);
+                    }
+                }
+                return page;
+            } finally {
+                leave();
+            }
+        }
+
+        @Override
+        public long getMaxId() {
+            return maxId;
+        }
+
+        @Override
+        public void insertPlayer(Player player) {
+            if (player.getName().equals(failInsertOf)) {
+                throw new IllegalStateException("Cannot insert " + player.getName());
+            }
+            assertNull(rows.put(player.getId(), player));
+            maxId = Math.max(maxId, player.getId());
+        }
+
+        @Override
+        public void insertPlayers(List<Player> players) {
+            for (Player player : players) {
+                insertPlayer(player);
+            }
+        }
+
+        @Override
+        public void updatePlayer(Player player) {
+            assertNotNull(rows.put(player.getId(), player));
+        }
+
+        @Override
+        public void deletePlayer(long playerId) {
+            rows.remove(playerId);
+        }
+
+        @Override
+        public void clearPlayers() {
+            rows.clear();
+        }
+
+        @Override
+        public void runInTransaction(Runnable writes) {
+            enter();
+            try {
+                CountDownLatch release = blockRelease;
+                if (release != null) {
+                    blockRelease = null;
+                    blocked.countDown();
+                    release.await();
+                }
+                transactions.incrementAndGet();
+                beforeTransaction = new TreeMap<>(rows);
+                try {
+                    writes.run();
+                } catch (RuntimeException e) {
+                    rows.clear();
+                    rows.putAll(beforeTransaction);
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                leave();
+            }
+        }
+
+        private void enter() {
+            assertEquals("store used from two threads at once", 1, users.incrementAndGet());
+        }
+
+        private void leave() {
+            users.decrementAndGet();
+        }
+    }
+}
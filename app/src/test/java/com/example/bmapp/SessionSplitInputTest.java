@@ -0,0 +1,81 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for reading the split dialog's courts and attendance.
+ */
+public class SessionSplitInputTest {
+
+    private static final SessionSplitInput.NameLookup NAMES =
+            name -> name.equalsIgnoreCase("Nimal Perera") ? 1 : name.equalsIgnoreCase("Kasun") ? 2 : 0;
+
+    @Test
+    public void validLines_becomeSlotsAndAttendances() {
+        SessionSplitInput input = SessionSplitInput.parse(
+                "18:00-20:00 2400 400\n\n19.00-20.00 1200.50 0\n",
+                "Nimal Perera 18:30-20:00\nkasun 18:00-19:30 M\n",
+                NAMES);
+
+        assertTrue(input.errors.isEmpty());
+        assertEquals(2, input.slots.size());
+        assertEquals(18 * 60, input.slots.get(0).startMinute);
+        assertEquals(120_050, input.slots.get(1).courtFeeCents);
+        assertEquals(2, input.attendances.size());
+        assertEquals(1, input.attendances.get(0).playerId);
+        assertFalse(input.attendances.get(0).member);
+        assertEquals(2, input.attendances.get(1).playerId);
+        assertTrue(input.attendances.get(1).member);
+        assertEquals(19 * 60 + 30, input.attendances.get(1).endMinute);
+    }
+
+    @Test
+    public void badLines_reportTheirLineNumbers() {
+        SessionSplitInput input = SessionSplitInput.parse(
+                "18:00-20:00 2400 400\n20:00-18:00 100 0\n18:00-19:00 -5 0",
+                "Someone 18:00-19:00\nKasun 18:00",
+                NAMES);
+
+        assertEquals(4, input.errors.size());
+        assertFalse(input.errors.get(0).attendance);
+        assertEquals(2, input.errors.get(0).lineNumber);
+        assertEquals(R.string.error_split_court_line, input.errors.get(0).messageRes);
+        assertEquals(R.string.error_invalid_amount, input.errors.get(1).messageRes);
+        assertTrue(input.errors.get(2).attendance);
+        assertEquals(R.string.error_split_unknown_player, input.errors.get(2).messageRes);
+        assertEquals(2, input.errors.get(3).lineNumber);
+        assertEquals(R.string.error_split_attendance_line, input.errors.get(3).messageRes);
+    }
+
+    @Test
+    public void splitNight_becomesALedgerSessionOfDues() {
+        SessionSplitInput input = SessionSplitInput.parse(
+                "18:00-20:00 2400 400\n19:00-20:00 1200 0",
+                "Nimal Perera 18:00-20:00\nKasun 18:00-19:00 m\nKasun 19:30-20:00",
+                NAMES);
+        SessionSplitter.Result split = SessionSplitter.split(input.slots, input.attendances);
+
+        SessionLedger.Session session = input.toSession(split, 1_000);
+        assertEquals(1_000, session.playedAt);
+        assertEquals(360_000, session.courtFeeCents);
+        assertEquals(40_000, session.shuttleFeeCents);
+        assertEquals(1, session.numMembers);
+        assertEquals(1, session.numNonMembers);
+        assertEquals(split.totalCents, session.totalCents);
+
+        List<SessionLedger.Attendee> attendees = input.attendees(split);
+        assertEquals(2, attendees.size());
+        long owed = 0;
+        for (int i = 0; i < attendees.size(); i++) {
+            assertEquals(split.playerIds[i], attendees.get(i).playerId);
+            assertEquals(split.playerIds[i] == 2, attendees.get(i).member);
+            assertEquals(split.shareCents[i], attendees.get(i).owedCents);
+            owed += attendees.get(i).owedCents;
+        }
+        assertEquals(session.totalCents, owed);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bmapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM tests for the pro-rata split of multi-court nights.
+ */
+public class SessionSplitterTest {
+
+    @Test
+    public void oneSlotEveryoneThroughout_matchesFeeCalculator() {
+        List<SessionSplitter.Slot> slots = Collections.singletonList(
+                new SessionSplitter.Slot(18 * 60, 20 * 60, 100_000, 20_000));
+        List<SessionSplitter.Attendance> attendances = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            attendances.add(new SessionSplitter.Attendance(i + 1, i < 3, 18 * 60, 20 * 60));
+        }
+
+        SessionSplitter.Result split = SessionSplitter.split(slots, attendances);
+
+        FeeCalculator.Result expected = new FeeCalculator.Result();
+        FeeCalculator.calculate(100_000, 20_000, 3, 1, expected);
+        assertEquals(expected.totalCents, split.totalCents);
+        assertEquals(expected.nonMemberShareCents, split.shareCents[3]);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(Math.abs(split.shareCents[i] - expected.memberShareCents) <= 1);
+        }
+        assertSharesAddUp(split);
+    }
+
+    @Test
+    public void playerLeavingEarly_paysOnlyForTheirTime() {
+        List<SessionSplitter.Slot> slots = Collections.singletonList(
+                new SessionSplitter.Slot(0, 60, 6_000, 0));
+        List<SessionSplitter.Attendance> attendances = Arrays.asList(
+                new SessionSplitter.Attendance(1, false, 0, 60),
+                new SessionSplitter.Attendance(2, false, 0, 30));
+
+        SessionSplitter.Result split = SessionSplitter.split(slots, attendances);
+
+        // First half split two ways, second half paid by the one who stayed
+        assertArrayEquals(new long[] {1, 2}, split.playerIds);
+        assertArrayEquals(new long[] {4_500, 1_500}, split.shareCents);
+        assertEquals(0, split.unattendedCents);
+    }
+
+    @Test
+    public void overlappingCourtsAndReturningPlayer_areAddedUp() {
+        // Two courts for the first hour, one for the second
+        List<SessionSplitter.Slot> slots = Arrays.asList(
+                new SessionSplitter.Slot(0, 60, 3_000, 600),
+                new SessionSplitter.Slot(0, 120, 6_000, 1_200));
+        List<SessionSplitter.Attendance> attendances = Arrays.asList(
+                new SessionSplitter.Attendance(7, false, 0, 30),
+                new SessionSplitter.Attendance(8, false, 0, 120),
+                new SessionSplitter.Attendance(7, false, 90, 120));
+
+        SessionSplitter.Result split = SessionSplitter.split(slots, attendances);
+
+        // Each half hour costs 3600 in the first hour and 1800 in the second; player 7 shares 0-30 and 90-120
+        assertArrayEquals(new long[] {7, 8}, split.playerIds);
+        assertEquals(1_800 + 900, split.shareCents[0]);
+        assertEquals(1_800 + 3_600 + 1_800 + 900, split.shareCents[1]);
+        assertEquals(10_800, split.totalCents);
+    }
+
+    @Test
+    public void bookedTimeWithNobodyOnCourt_isReportedNotCharged() {
+        List<SessionSplitter.Slot> slots = Collections.singletonList(
+                new SessionSplitter.Slot(0, 60, 6_000, 0));
+        List<SessionSplitter.Attendance> attendances = Collections.singletonList(
+                new SessionSplitter.Attendance(1, false, 30, 90));
+
+        SessionSplitter.Result split = SessionSplitter.split(slots, attendances);
+
+        assertEquals(3_000, split.shareCents[0]);
+        assertEquals(3_000, split.unattendedCents);
+    }
+
+    @Test
+    public void largeRandomNight_sharesAlwaysAddUp() {
+        Random random = new Random(42);
+        List<SessionSplitter.Slot> slots = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int start = 17 * 60 + random.nextInt(4) * 30;
+            slots.add(new SessionSplitter.Slot(start, start + 30 + random.nextInt(4) * 30,
+                    random.nextInt(3_000_00), random.nextInt(50_000)));
+        }
+        List<SessionSplitter.Attendance> attendances = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int start = 17 * 60 + random.nextInt(180);
+            attendances.add(new SessionSplitter.Attendance(random.nextInt(400), random.nextInt(3) > 0,
+                    start, start + 15 + random.nextInt(120)));
+        }
+
+        SessionSplitter.Result split = SessionSplitter.split(slots, attendances);
+
+        assertSharesAddUp(split);
+    }
+
+    private static void assertSharesAddUp(SessionSplitter.Result split) {
+        long sum = 0;
+        for (long share : split.shareCents) {
+            sum += share;
+        }
+        assertEquals(split.totalCents, sum);
+    }
+}
@@ -0,0 +1,51 @@
+// Pure-JVM JMH benchmarks for the app's plain-Java code paths.
+//
+//   ./gradlew :benchmarks:jmh                       -> build/results/jmh/latest.json
+//   ./gradlew :benchmarks:jmh -PjmhTag=$(git rev-parse --short HEAD)
+//
+// Results are JMH JSON, one file per tag, so runs from different commits can
+// be compared side by side (e.g. with jmh.morethan.io).
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Compile the app classes under test straight from its source tree; they
+// have no Android dependencies.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/bmapp/Player.java",
+                "com/example/bmapp/FeeCalculator.java",
+                "com/example/bmapp/SessionSplitter.java",
+                "com/example/bmapp/RosterColumns.java",
+                "com/example/bmapp/RosterIndex.java",
+                "com/example/bmapp/RosterCodec.java",
+                "com/example/bmapp/NameIndex.java",
+                "com/example/bmapp/Money.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    jmh("com.google.code.gson:gson:2.10.1")
+}
+
+val resultTag = providers.gradleProperty("jmhTag").orElse("latest")
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file(resultTag.map { "results/jmh/$it.json" }))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
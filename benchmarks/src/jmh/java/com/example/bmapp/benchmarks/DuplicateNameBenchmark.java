@@ -0,0 +1,62 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.NameIndex;
+import com.example.bmapp.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duplicate-name check in {@code PlayersActivity.validatePlayerInput}:
+ * the original scan over the in-memory list, against the {@link NameIndex}
+ * lookup {@code RosterWriter.isNameTaken} now does.
+ *
+ * Each case looks up a name that isn't on the roster, which is the common
+ * case and the scan's worst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DuplicateNameBenchmark {
+
+    private static final String NEW_NAME = "nimal NEW";
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int rosterSize;
+
+    private List<Player> players;
+    private final NameIndex names = new NameIndex();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        players = Rosters.generate(rosterSize);
+        for (Player player : players) {
+            names.put(player.getName(), player.getId());
+        }
+    }
+
+    @Benchmark
+    public boolean linearScan() {
+        for (Player player : players) {
+            if (player.getName().equalsIgnoreCase(NEW_NAME)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean nameIndex() {
+        return names.isTaken(NEW_NAME, 0);
+    }
+}
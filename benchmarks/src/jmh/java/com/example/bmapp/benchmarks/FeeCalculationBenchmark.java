@@ -0,0 +1,87 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.FeeCalculator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fee split behind {@code MainActivity.calculateFeePerPlayer}: the
+ * original double formula against {@link FeeCalculator}, for one session of
+ * {@code rosterSize} players and for a batch of sessions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeeCalculationBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int rosterSize;
+
+    private long courtFeeCents;
+    private long shuttleFeeCents;
+    private int numMembers;
+    private int numNonMembers;
+    private final FeeCalculator.Result result = new FeeCalculator.Result();
+
+    private final long[] batchCourt = new long[BATCH_SIZE];
+    private final long[] batchShuttle = new long[BATCH_SIZE];
+    private final int[] batchMembers = new int[BATCH_SIZE];
+    private final int[] batchNonMembers = new int[BATCH_SIZE];
+    private final FeeCalculator.Result[] batchResults = new FeeCalculator.Result[BATCH_SIZE];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        courtFeeCents = 1_500_00;
+        shuttleFeeCents = 37_50L * rosterSize / 4;
+        numMembers = rosterSize * 3 / 4;
+        numNonMembers = rosterSize - numMembers;
+
+        Random random = new Random(rosterSize);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batchCourt[i] = random.nextInt(5_000_00);
+            batchShuttle[i] = random.nextInt(50_000);
+            batchMembers[i] = random.nextInt(rosterSize);
+            batchNonMembers[i] = rosterSize - batchMembers[i];
+            batchResults[i] = new FeeCalculator.Result();
+        }
+    }
+
+    // The formula MainActivity used before FeeCalculator, in rupees
+    @Benchmark
+    public void legacyDouble(Blackhole blackhole) {
+        double courtFee = courtFeeCents / 100.0;
+        double shuttleFee = shuttleFeeCents / 100.0;
+        int totalPlayers = numMembers + numNonMembers;
+        double nonMemberPayment = (courtFee + shuttleFee) / totalPlayers;
+        double memberPayment = shuttleFee / totalPlayers - courtFee / numMembers + courtFee / totalPlayers;
+        blackhole.consume(nonMemberPayment);
+        blackhole.consume(memberPayment);
+    }
+
+    @Benchmark
+    public FeeCalculator.Result exactCents() {
+        FeeCalculator.calculate(courtFeeCents, shuttleFeeCents, numMembers, numNonMembers, result);
+        return result;
+    }
+
+    @Benchmark
+    public FeeCalculator.Result[] exactCentsBatch() {
+        FeeCalculator.calculateBatch(BATCH_SIZE, batchCourt, batchShuttle,
+                batchMembers, batchNonMembers, batchResults);
+        return batchResults;
+    }
+}
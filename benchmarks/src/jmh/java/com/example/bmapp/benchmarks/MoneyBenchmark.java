@@ -0,0 +1,80 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.Money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DecimalFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting and parsing amounts: the {@link DecimalFormat} and
+ * {@link String#format} calls the screens used before against {@link Money},
+ * per amount, over a spread of realistic amounts. Run with
+ * {@code -prof gc} to see the allocation per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+    private static final int AMOUNTS = 1024;
+
+    private final long[] cents = new long[AMOUNTS];
+    private final String[] typed = new String[AMOUNTS];
+    private final char[] buffer = new char[Money.MAX_CHARS];
+    private final DecimalFormat decimalFormat = new DecimalFormat("#0.00");
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < AMOUNTS; i++) {
+            cents[i] = random.nextInt(5_000_00);
+            typed[i] = Money.toPlainText(cents[i]);
+        }
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (AMOUNTS - 1);
+        return next;
+    }
+
+    // What PlayerAdapter did per row
+    @Benchmark
+    public String decimalFormat() {
+        return "$" + decimalFormat.format(cents[nextIndex()] / 100.0);
+    }
+
+    // What the summary and fee screens did
+    @Benchmark
+    public String stringFormat() {
+        return String.format(Locale.getDefault(), "රු %.2f", cents[nextIndex()] / 100.0);
+    }
+
+    @Benchmark
+    public void moneyIntoBuffer(Blackhole blackhole) {
+        blackhole.consume(Money.format(cents[nextIndex()], buffer));
+        blackhole.consume(buffer);
+    }
+
+    @Benchmark
+    public long parseDouble() {
+        return Math.round(Double.parseDouble(typed[nextIndex()]) * 100);
+    }
+
+    @Benchmark
+    public long moneyParse() {
+        return Money.parseCents(typed[nextIndex()]);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.Player;
+import com.example.bmapp.RosterColumns;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk roster work on the old list of {@link Player} objects against
+ * {@link RosterColumns}: adding up the larger amounts, filtering, sorting by amount and
+ * the snapshot made for one edit. Run with {@code -prof gc} to see the bytes
+ * each snapshot allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RosterColumnsBenchmark {
+
+    private static final long THRESHOLD_CENTS = 500_000;
+
+    @Param({"1000", "10000", "100000"})
+    public int rosterSize;
+
+    private List<Player> players;
+    private RosterColumns columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        players = Rosters.generate(rosterSize);
+        columns = RosterColumns.of(players);
+    }
+
+    @Benchmark
+    public long sumObjects() {
+        long total = 0;
+        for (Player player : players) {
+            long cents = player.getAmountCents();
+            if (cents >= THRESHOLD_CENTS) {
+                total += cents;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long sumColumns() {
+        return columns.sumCents((id, name, cents) -> cents >= THRESHOLD_CENTS);
+    }
+
+    @Benchmark
+    public List<Player> filterObjects() {
+        List<Player> matches = new ArrayList<>();
+        for (Player player : players) {
+            if (player.getAmountCents() >= THRESHOLD_CENTS) {
+                matches.add(player);
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int[] filterColumns() {
+        return columns.filter((id, name, cents) -> cents >= THRESHOLD_CENTS);
+    }
+
+    @Benchmark
+    public List<Player> sortObjects() {
+        List<Player> sorted = new ArrayList<>(players);
+        sorted.sort(Comparator.comparingLong(Player::getAmountCents));
+        return sorted;
+    }
+
+    @Benchmark
+    public int[] sortColumns() {
+        return columns.sortedByCents();
+    }
+
+    @Benchmark
+    public List<Player> editObjects() {
+        List<Player> edited = new ArrayList<>(players);
+        edited.set(rosterSize / 2, new Player(rosterSize / 2 + 1, "Edited", 100));
+        return edited;
+    }
+
+    @Benchmark
+    public RosterColumns editColumns() {
+        return columns.withReplaced(rosterSize / 2, "Edited", 100, false);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.Player;
+import com.example.bmapp.RosterColumns;
+import com.example.bmapp.RosterIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.Collator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The players screen filter: one keystroke's query against a built
+ * {@link RosterIndex}, and rebuilding the index after a one-player edit,
+ * which reuses the previous collation keys. Both have to fit in a 16 ms frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RosterSearchBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rosterSize;
+
+    @Param({"", "n", "nimal 12", "කසු"})
+    public String query;
+
+    private final Collator collator = RosterIndex.newCollator();
+    private final AtomicBoolean notCancelled = new AtomicBoolean();
+    private RosterIndex index;
+    private RosterColumns edited;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RosterColumns players = RosterColumns.of(Rosters.generate(rosterSize));
+        index = RosterIndex.build(players, collator, null);
+        edited = players.withReplaced(rosterSize / 2, "Renamed player", 1_250, false);
+    }
+
+    @Benchmark
+    public List<Player> query() {
+        return index.query(query, RosterIndex.Sort.NAME_ASCENDING, notCancelled);
+    }
+
+    @Benchmark
+    public RosterIndex rebuildAfterEdit() {
+        return RosterIndex.build(edited, collator, index);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.Player;
+import com.example.bmapp.RosterCodec;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Roster (de)serialization: the Gson JSON the app used to keep in
+ * SharedPreferences, against the {@link RosterCodec} format the export spool
+ * writes and reads back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RosterSerializationBenchmark {
+
+    private static final Type PLAYER_LIST_TYPE = new TypeToken<List<Player>>() {}.getType();
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int rosterSize;
+
+    private final Gson gson = new Gson();
+    private List<Player> players;
+    private String json;
+    private byte[] encoded;
+    private File file;
+    private RandomAccessFile output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        players = Rosters.generate(rosterSize);
+        json = gson.toJson(players);
+
+        file = File.createTempFile("roster", ".bin");
+        output = new RandomAccessFile(file, "rw");
+        codecWrite();
+        encoded = Files.readAllBytes(file.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        output.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public String gsonSerialize() {
+        return gson.toJson(players);
+    }
+
+    @Benchmark
+    public List<Player> gsonDeserialize() {
+        return gson.fromJson(json, PLAYER_LIST_TYPE);
+    }
+
+    // Encoding only; the file is reused so the disk sync isn't what gets measured
+    @Benchmark
+    public long codecWrite() throws IOException {
+        FileChannel channel = output.getChannel();
+        channel.position(0);
+        RosterCodec.Writer writer = new RosterCodec.Writer(channel);
+        for (Player player : players) {
+            writer.add(player.getId(), player.getName(), player.getAmountCents(), player.isMember());
+        }
+        writer.finish();
+        return channel.position();
+    }
+
+    @Benchmark
+    public List<Player> codecRead() throws IOException {
+        List<Player> read = new ArrayList<>(rosterSize);
+        RosterCodec.read(Channels.newChannel(new ByteArrayInputStream(encoded)),
+                (id, name, cents, member) -> read.add(new Player(id, name, cents, member)));
+        return read;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic rosters shared by the benchmarks. */
+final class Rosters {
+
+    private static final String[] NAMES = {"කසුන්", "Nimal", "Sahan", "දිනේෂ්", "Ruwan", "Zoë", "Amali"};
+
+    private Rosters() {
+    }
+
+    static List<Player> generate(int size) {
+        Random random = new Random(size);
+        List<Player> players = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)] + " " + i;
+            players.add(new Player(i + 1, name, random.nextInt(1_000_000)));
+        }
+        return players;
+    }
+}
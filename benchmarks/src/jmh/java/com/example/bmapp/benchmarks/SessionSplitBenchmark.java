@@ -0,0 +1,62 @@
+package com.example.bmapp.benchmarks;
+
+import com.example.bmapp.SessionSplitter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionSplitter} for a night of {@code slots} court bookings between
+ * 17:00 and 23:00 and {@code players} players staying 30 to 180 minutes,
+ * some of them twice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SessionSplitBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int players;
+
+    @Param({"4", "40"})
+    public int slots;
+
+    private final List<SessionSplitter.Slot> slotList = new ArrayList<>();
+    private final List<SessionSplitter.Attendance> attendances = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(players * 31L + slots);
+        for (int i = 0; i < slots; i++) {
+            int start = 17 * 60 + random.nextInt(10) * 30;
+            slotList.add(new SessionSplitter.Slot(start, start + 30 + random.nextInt(4) * 30,
+                    random.nextInt(3_000_00), random.nextInt(50_000)));
+        }
+        for (int i = 0; i < players; i++) {
+            int visits = random.nextInt(5) == 0 ? 2 : 1;
+            int start = 17 * 60 + random.nextInt(120);
+            for (int v = 0; v < visits; v++) {
+                int end = start + 30 + random.nextInt(150);
+                attendances.add(new SessionSplitter.Attendance(i + 1, random.nextInt(4) > 0, start, end));
+                start = end + 15;
+            }
+        }
+    }
+
+    @Benchmark
+    public SessionSplitter.Result split() {
+        return SessionSplitter.split(slotList, attendances);
+    }
+}
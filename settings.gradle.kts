@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "BMApp"
 include(":app")
+include(":benchmarks")